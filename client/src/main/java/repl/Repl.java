@@ -2,12 +2,15 @@ package repl;
 
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
 import serverfacade.ServerFacade;
 import serverfacade.websocket.ServerMessageObserver;
 import serverfacade.websocket.WebSocketFacade;
 import ui.GameplayClient;
 import ui.PostLoginClient;
 import ui.PreLoginClient;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
 import websocket.messages.NotificationMessage;
@@ -97,6 +100,7 @@ public class Repl implements ServerMessageObserver {
             case LOAD_GAME -> loadGame(((LoadGameMessage) message).getGame());
             case ERROR -> displayError(((ErrorMessage) message).getErrorMessage());
             case NOTIFICATION -> displayNotification(((NotificationMessage) message).getMessage());
+            case ANALYSIS, ANALYSIS_COMPLETE -> displayAnalysis((AnalysisMessage) message);
         }
         printPrompt();
     }
@@ -117,6 +121,32 @@ public class Repl implements ServerMessageObserver {
         System.out.print(message);
     }
 
+    public void displayAnalysis(AnalysisMessage analysis) {
+        if (analysis.getStatus() == AnalysisMessage.Status.NOT_STARTED) {
+            System.out.print("Analysis cancelled before it started");
+            return;
+        }
+        String score = analysis.getMateIn() != 0 ? "mate in " + analysis.getMateIn()
+                : String.format("%+.2f", analysis.getScore() / 100.0);
+        StringBuilder line = new StringBuilder();
+        for (ChessMove move : analysis.getBestLine()) {
+            line.append(" ").append(moveString(move));
+        }
+        String prefix = switch (analysis.getStatus()) {
+            case FINISHED -> "Analysis done: ";
+            case CANCELLED -> "Analysis cancelled: ";
+            default -> "Analysis: ";
+        };
+        System.out.print(prefix + "depth " + analysis.getDepth() + ", " + score + ", best line" + line);
+    }
+
+    private static String moveString(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        return String.format("%c%d%c%d", (char) ('a' + start.getColumn() - 1), start.getRow(),
+                (char) ('a' + end.getColumn() - 1), end.getRow());
+    }
+
     public Integer getGameID() {
         return gameID;
     }
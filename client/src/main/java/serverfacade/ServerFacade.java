@@ -68,7 +68,16 @@ public class ServerFacade {
 
 
     public GameRecords.CreateResult createGame(String authToken, String gameName) throws ResponseException {
-        GameRecords.CreateRequest request = new GameRecords.CreateRequest(gameName);
+        return createGame(authToken, gameName, null);
+    }
+
+    /**
+     * @param botColor the color the server's engine plays, or null for a game between two players
+     */
+    public GameRecords.CreateResult createGame(String authToken, String gameName, ChessGame.TeamColor botColor)
+            throws ResponseException {
+        String color = botColor == null ? null : botColor.toString();
+        GameRecords.CreateRequest request = new GameRecords.CreateRequest(gameName, color);
 
         var path = "/game";
         return this.makeRequest("POST", path,
@@ -3,6 +3,7 @@ package serverfacade.websocket;
 import chess.ChessMove;
 import com.google.gson.Gson;
 import sharedexception.ResponseException;
+import websocket.commands.AnalyzeCommand;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 
@@ -79,6 +80,22 @@ public class WebSocketFacade extends Endpoint {
         }
     }
 
-}
+    public void analyze(String authToken, Integer gameID, Integer millis) throws ResponseException {
+        try {
+            var command = new AnalyzeCommand(UserGameCommand.CommandType.ANALYZE, authToken, gameID, millis);
+            this.session.getBasicRemote().sendText(new Gson().toJson(command));
+        } catch (IOException ex) {
+            throw new ResponseException(500, ex.getMessage());
+        }
+    }
 
+    public void cancelAnalysis(String authToken, Integer gameID) throws ResponseException {
+        try {
+            var command = new UserGameCommand(UserGameCommand.CommandType.CANCEL_ANALYSIS, authToken, gameID);
+            this.session.getBasicRemote().sendText(new Gson().toJson(command));
+        } catch (IOException ex) {
+            throw new ResponseException(500, ex.getMessage());
+        }
+    }
 
+}
@@ -46,6 +46,8 @@ public class GameplayClient implements Client, ServerMessageObserver {
                 case "move" -> movePiece(params);
                 case "resign" -> resign();
                 case "highlight" -> highlightMoves(params);
+                case "analyze" -> analyze(params);
+                case "cancel" -> cancelAnalysis();
                 default -> help();
             };
         } catch (ResponseException ex) {
@@ -144,6 +146,25 @@ public class GameplayClient implements Client, ServerMessageObserver {
     }
 
 
+    public String analyze(String... params) throws ResponseException {
+        Integer millis = null;
+        if (params.length == 1) {
+            try {
+                millis = (int) (Double.parseDouble(params[0]) * 1000);
+            } catch (NumberFormatException ex) {
+                throw new ResponseException(500, "Expected: analyze <SECONDS> (ex: analyze 5)");
+            }
+        }
+        ws.analyze(authToken, gameID, millis);
+        return "";
+    }
+
+    public String cancelAnalysis() throws ResponseException {
+        ws.cancelAnalysis(authToken, gameID);
+        return "";
+    }
+
+
     // Version of help message for post login
     public String help() {
         return SET_TEXT_COLOR_BLUE + "\nredraw" +
@@ -156,6 +177,10 @@ public class GameplayClient implements Client, ServerMessageObserver {
                 SET_TEXT_COLOR_WHITE + " - from the game\n" +
                 SET_TEXT_COLOR_BLUE + "highlight " +
                 SET_TEXT_COLOR_WHITE + " - possible moves\n" +
+                SET_TEXT_COLOR_BLUE + "analyze " +
+                SET_TEXT_COLOR_WHITE + " - the position for a few seconds (once the game is over, for players)\n" +
+                SET_TEXT_COLOR_BLUE + "cancel" +
+                SET_TEXT_COLOR_WHITE + " - the analysis\n" +
                 SET_TEXT_COLOR_BLUE + "help" +
                 SET_TEXT_COLOR_WHITE + " - with possible commands\n";
     }
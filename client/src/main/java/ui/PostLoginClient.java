@@ -62,8 +62,19 @@ public class PostLoginClient implements Client, ServerMessageObserver {
                 return "success";
             } catch (NumberFormatException ignored) {
             }
+        } else if (params.length == 2) {
+            // the computer plays the given color
+            ChessGame.TeamColor botColor = switch (params[1].toUpperCase()) {
+                case "WHITE" -> ChessGame.TeamColor.WHITE;
+                case "BLACK" -> ChessGame.TeamColor.BLACK;
+                default -> null;
+            };
+            if (botColor != null) {
+                server.createGame(authToken, params[0], botColor);
+                return "success";
+            }
         }
-        throw new ResponseException(400, "Expected: create <NAME>");
+        throw new ResponseException(400, "Expected: create <NAME> [WHITE|BLACK]");
 
     }
 
@@ -184,6 +195,8 @@ public class PostLoginClient implements Client, ServerMessageObserver {
     public String help() {
         return SET_TEXT_COLOR_BLUE + "create <NAME>" +
                 SET_TEXT_COLOR_WHITE + " - game\n" +
+                SET_TEXT_COLOR_BLUE + "create <NAME> [WHITE|BLACK]" +
+                SET_TEXT_COLOR_WHITE + " - game against the computer, which plays that color\n" +
                 SET_TEXT_COLOR_BLUE + "list" +
                 SET_TEXT_COLOR_WHITE + " - games\n" +
                 SET_TEXT_COLOR_BLUE + "join <ID> [WHITE|BLACK]" +
@@ -9,7 +9,15 @@ import java.util.List;
 import java.util.Objects;
 
 public interface GameDAO {
-    GameData createGame(String gameName) throws DataAccessException;
+    /**
+     * @param botColor the seat the engine takes, or null for a game between two players
+     */
+    GameData createGame(String gameName, ChessGame.TeamColor botColor) throws DataAccessException;
+
+    default GameData createGame(String gameName) throws DataAccessException {
+        return createGame(gameName, null);
+    }
+
     GameData getGame(int gameID) throws DataAccessException;
     List<GameData> listGames() throws DataAccessException;
     void updateGame(String username, ChessGame.TeamColor playerColor, int gameID) throws DataAccessException;
@@ -19,6 +27,10 @@ public interface GameDAO {
 
     default String[] calculateUsernames(String username, ChessGame.TeamColor playerColor,
                                         GameData oldGame) throws DataAccessException {
+        // the engine's seat is never free, whatever name is asked for
+        if (oldGame.isBotSeat(playerColor)) {
+            throw new DataAccessException("Error: already taken");
+        }
         // update correct username based on player color, ensuring name is not taken
         String newWhiteUsername;
         String newBlackUsername;
@@ -40,20 +52,17 @@ public interface GameDAO {
     }
 
     default GameData getNewGameData(String username, GameData oldGame) {
-        // Find usernames to make null
+        // Find usernames to make null. The engine's seat stays taken, even for an account
+        // that shares its name
         String whiteUsername = oldGame.whiteUsername();
         String blackUsername = oldGame.blackUsername();
-        GameData newGameData = oldGame;
-        if (Objects.equals(whiteUsername, username) && Objects.equals(blackUsername, username)) {
-            newGameData = new GameData(oldGame.gameID(), null, null,
-                    oldGame.gameName(), oldGame.game());
-        } else if (Objects.equals(whiteUsername, username)) {
-            newGameData = new GameData(oldGame.gameID(), null, blackUsername,
-                    oldGame.gameName(), oldGame.game());
-        } else if (Objects.equals(blackUsername, username)) {
-            newGameData = new GameData(oldGame.gameID(), whiteUsername, null,
-                    oldGame.gameName(), oldGame.game());
+        if (Objects.equals(whiteUsername, username) && !oldGame.isBotSeat(ChessGame.TeamColor.WHITE)) {
+            whiteUsername = null;
+        }
+        if (Objects.equals(blackUsername, username) && !oldGame.isBotSeat(ChessGame.TeamColor.BLACK)) {
+            blackUsername = null;
         }
-        return newGameData;
+        return new GameData(oldGame.gameID(), whiteUsername, blackUsername,
+                oldGame.gameName(), oldGame.game(), oldGame.botColor());
     }
 }
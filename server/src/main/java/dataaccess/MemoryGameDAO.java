@@ -11,7 +11,7 @@ public class MemoryGameDAO implements  GameDAO {
     private final HashMap<Integer, GameData> data = new HashMap<>();
 
     @Override
-    public GameData createGame(String gameName) throws DataAccessException {
+    public GameData createGame(String gameName, ChessGame.TeamColor botColor) throws DataAccessException {
         // Create a unique id
         Random random = new Random();
         // try a maximum of 100 times to generate a new gameID
@@ -26,7 +26,10 @@ public class MemoryGameDAO implements  GameDAO {
             gameID = 1000 + random.nextInt(9000);
         }
 
-        GameData game = new GameData(gameID, null, null, gameName, new ChessGame());
+        // The engine's seat is filled in the same write, so a bot game never exists without it
+        String whiteUsername = botColor == ChessGame.TeamColor.WHITE ? GameData.BOT_USERNAME : null;
+        String blackUsername = botColor == ChessGame.TeamColor.BLACK ? GameData.BOT_USERNAME : null;
+        GameData game = new GameData(gameID, whiteUsername, blackUsername, gameName, new ChessGame(), botColor);
         data.put(gameID, game);
         return game;
     }
@@ -58,7 +61,7 @@ public class MemoryGameDAO implements  GameDAO {
 
         // create new GameData model and insert in old position
         GameData newGameData = new GameData(oldGame.gameID(), newWhiteUsername, newBlackUsername,
-                oldGame.gameName(), oldGame.game());
+                oldGame.gameName(), oldGame.game(), oldGame.botColor());
 
         data.put(gameID, newGameData);
     }
@@ -80,7 +83,7 @@ public class MemoryGameDAO implements  GameDAO {
 
         // create new GameData model and insert in old position
         GameData newGameData = new GameData(oldGame.gameID(), oldGame.whiteUsername(), oldGame.blackUsername(),
-                oldGame.gameName(), game);
+                oldGame.gameName(), game, oldGame.botColor());
 
         data.put(gameID, newGameData);
 
@@ -27,7 +27,7 @@ public class SqlGameDAO extends SqlDAO implements GameDAO {
     }
 
     @Override
-    public GameData createGame(String gameName) throws DataAccessException {
+    public GameData createGame(String gameName, ChessGame.TeamColor botColor) throws DataAccessException {
         // Create a unique id
         Random random = new Random();
         // try a maximum of 100 times to generate a new gameID
@@ -56,7 +56,10 @@ public class SqlGameDAO extends SqlDAO implements GameDAO {
         }
 
         // Create new game GameData object
-        GameData game = new GameData(gameID, null, null, gameName, new ChessGame());
+        // The engine's seat is filled in the same write, so a bot game never exists without it
+        String whiteUsername = botColor == ChessGame.TeamColor.WHITE ? GameData.BOT_USERNAME : null;
+        String blackUsername = botColor == ChessGame.TeamColor.BLACK ? GameData.BOT_USERNAME : null;
+        GameData game = new GameData(gameID, whiteUsername, blackUsername, gameName, new ChessGame(), botColor);
         String gameJson = new Gson().toJson(game);
         // Insert into database
         String statement = "INSERT INTO game (gameID, gameData) VALUES (?,?)";
@@ -121,7 +124,7 @@ public class SqlGameDAO extends SqlDAO implements GameDAO {
 
         // create new GameData model and serialize it
         GameData newGameData = new GameData(oldGame.gameID(), newWhiteUsername, newBlackUsername,
-                oldGame.gameName(), oldGame.game());
+                oldGame.gameName(), oldGame.game(), oldGame.botColor());
         String gameJson = new Gson().toJson(newGameData);
 
         // Insert into database
@@ -152,7 +155,7 @@ public class SqlGameDAO extends SqlDAO implements GameDAO {
 
         // create new GameData model and insert in old position
         GameData newGameData = new GameData(oldGame.gameID(), oldGame.whiteUsername(), oldGame.blackUsername(),
-                oldGame.gameName(), game);
+                oldGame.gameName(), game, oldGame.botColor());
         String gameJson = new Gson().toJson(newGameData);
         // update database
         String statement = "UPDATE game SET gameData=? WHERE gameID=?";
@@ -0,0 +1,196 @@
+package server.websocket;
+
+import chess.ChessGame;
+import engine.Engine;
+import engine.SearchLimits;
+import engine.SearchResult;
+import websocket.messages.AnalysisMessage;
+import websocket.messages.ServerMessage;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs ANALYZE requests on a small pool of its own, so a search never holds up the
+ * threads serving websocket messages.
+ * <p>
+ * The pool and its queue are both bounded: when they are full, new requests are turned
+ * away rather than piling up. Each user may only have a few analyses going at once, and
+ * one per game, which a CANCEL_ANALYSIS stops early.
+ * <p>
+ * Every pool thread keeps an engine for good, so the transposition tables take threads
+ * times {@link #TABLE_MEGABYTES}. Both can be set with the chess.analysis.threads and
+ * chess.analysis.tableMegabytes system properties.
+ */
+public class AnalysisService {
+    public static final int DEFAULT_MILLIS = 3000;
+    public static final int MIN_MILLIS = 100;
+    public static final int MAX_MILLIS = 10000;
+    public static final int MAX_ANALYSES_PER_USER = 2;
+    public static final int TABLE_MEGABYTES = Integer.getInteger("chess.analysis.tableMegabytes", 8);
+    private static final int THREADS = Integer.getInteger("chess.analysis.threads",
+            Math.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 4));
+    private static final int QUEUE_CAPACITY = 16;
+
+    private record Key(String username, Integer gameID) {}
+
+    /**
+     * One request, which may still be waiting for a thread
+     */
+    private static final class Analysis {
+        private Engine engine; // while searching
+        private boolean cancelled;
+        private Future<?> future;
+        private Consumer<ServerMessage> send;
+    }
+
+    private final ThreadPoolExecutor executor;
+    // Each pool thread keeps one engine, and its transposition table, between requests
+    private final ThreadLocal<Engine> engines;
+    private final ConcurrentHashMap<Key, Analysis> analyses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> analysesPerUser = new ConcurrentHashMap<>();
+
+    public AnalysisService() {
+        this(THREADS, TABLE_MEGABYTES);
+    }
+
+    /**
+     * @param threads how many analyses may run at once across all users
+     * @param tableMegabytes the size of each thread's transposition table
+     */
+    public AnalysisService(int threads, int tableMegabytes) {
+        engines = ThreadLocal.withInitial(() -> new Engine(tableMegabytes));
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "analysis-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues an analysis of the game's current position
+     *
+     * @param game the game, which the analysis keeps to itself
+     * @param millis how long to search for, or null for {@link #DEFAULT_MILLIS}
+     * @param send takes each message for the user, on the analysis thread
+     * @throws RejectedExecutionException if the user already has too many analyses or the server is too busy
+     */
+    public void start(String username, Integer gameID, ChessGame game, Integer millis,
+                      Consumer<ServerMessage> send) {
+        Key key = new Key(username, gameID);
+        Analysis analysis = new Analysis();
+        analysis.send = send;
+        if (analyses.putIfAbsent(key, analysis) != null) {
+            throw new RejectedExecutionException("Error: already analysing this game, cancel it first");
+        }
+        try {
+            analysesPerUser.merge(username, 1, (count, one) -> {
+                if (count >= MAX_ANALYSES_PER_USER) {
+                    throw new RejectedExecutionException("Error: only " + MAX_ANALYSES_PER_USER
+                            + " analyses can run at once");
+                }
+                return count + 1;
+            });
+        } catch (RejectedExecutionException ex) {
+            analyses.remove(key);
+            throw ex;
+        }
+
+        long budget = millis == null ? DEFAULT_MILLIS : Math.clamp(millis, MIN_MILLIS, MAX_MILLIS);
+        try {
+            // Hold the lock so the task can't run, and finish, before its future is recorded
+            synchronized (analysis) {
+                analysis.future = executor.submit(() -> run(key, analysis, game, budget, send));
+            }
+        } catch (RejectedExecutionException ex) {
+            finish(key);
+            throw new RejectedExecutionException("Error: the server is busy, try again soon");
+        }
+    }
+
+    /**
+     * Stops a user's analysis of a game. A running search still sends its best result so far
+     *
+     * @return false if there was no analysis to cancel
+     */
+    public boolean cancel(String username, Integer gameID) {
+        Key key = new Key(username, gameID);
+        Analysis analysis = analyses.get(key);
+        if (analysis == null) {
+            return false;
+        }
+        synchronized (analysis) {
+            analysis.cancelled = true;
+            if (analysis.engine != null) {
+                analysis.engine.stop();
+            } else if (analysis.future != null && analysis.future.cancel(false)) {
+                finish(key); // it never started, so it won't clean up after itself
+                analysis.send.accept(notStarted());
+            }
+        }
+        return true;
+    }
+
+    private void run(Key key, Analysis analysis, ChessGame game, long millis, Consumer<ServerMessage> send) {
+        Engine engine = engines.get();
+        try {
+            synchronized (analysis) {
+                if (analysis.cancelled) {
+                    send.accept(notStarted());
+                    return;
+                }
+                analysis.engine = engine;
+            }
+            ChessGame.TeamColor teamTurn = game.getTeamTurn();
+            SearchResult result = engine.search(game, SearchLimits.time(millis), iteration -> {
+                send.accept(toMessage(iteration, teamTurn, AnalysisMessage.Status.SEARCHING));
+                synchronized (analysis) {
+                    if (analysis.cancelled) {
+                        engine.stop(); // in case the cancel came before the search started
+                    }
+                }
+            });
+            boolean cancelled;
+            synchronized (analysis) {
+                cancelled = analysis.cancelled;
+            }
+            send.accept(toMessage(result, teamTurn,
+                    cancelled ? AnalysisMessage.Status.CANCELLED : AnalysisMessage.Status.FINISHED));
+        } finally {
+            synchronized (analysis) {
+                // The engine goes on to other requests, which a late cancel mustn't stop
+                analysis.engine = null;
+            }
+            finish(key);
+        }
+    }
+
+    private void finish(Key key) {
+        analyses.remove(key);
+        analysesPerUser.computeIfPresent(key.username(), (username, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Completes an analysis cancelled before its search began
+     */
+    private static AnalysisMessage notStarted() {
+        return new AnalysisMessage(AnalysisMessage.Status.NOT_STARTED, 0, 0, 0, 0, List.of());
+    }
+
+    private static AnalysisMessage toMessage(SearchResult result, ChessGame.TeamColor teamTurn,
+                                             AnalysisMessage.Status status) {
+        // The engine scores for the side to move, but clients want one point of view
+        int sign = teamTurn == ChessGame.TeamColor.WHITE ? 1 : -1;
+        return new AnalysisMessage(status, result.depth(), sign * result.score(), sign * result.mateIn(),
+                result.nodes(), result.line());
+    }
+}
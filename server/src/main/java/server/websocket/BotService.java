@@ -0,0 +1,242 @@
+package server.websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessRuleBook;
+import chess.MoveBuffer;
+import chess.PackedMove;
+import chess.Tablebase;
+import dataaccess.GameDAO;
+import engine.Engine;
+import engine.OpeningBook;
+import engine.SearchLimits;
+import model.GameData;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays the engine's side of bot games on a fixed pool of its own, so working out a
+ * reply never holds up the threads serving websocket messages.
+ * <p>
+ * The pool is shared fairly between games: a game has at most one move waiting or being
+ * worked out, and the queue is first come first served, so games take turns. Every search
+ * also stops after {@link #MOVE_MILLIS}, so a deep one can't keep a thread for long. The
+ * opening book and tablebases, when the chess.book and chess.tablebases system properties
+ * point at them, answer before any search.
+ * <p>
+ * Every pool thread keeps an engine for good, so the transposition tables take threads
+ * times {@link #TABLE_MEGABYTES}. Both can be set with the chess.bot.threads and
+ * chess.bot.tableMegabytes system properties.
+ * <p>
+ * A book, tablebase or search that fails or offers an illegal move is passed over for the
+ * next, down to any legal move, so the game always gets one. A move that can't be saved is
+ * tried again, up to {@link #MAX_ATTEMPTS} times, and each failure is reported to the game.
+ */
+public class BotService {
+    public static final int MOVE_MILLIS = 1000;
+    public static final int MAX_ATTEMPTS = 3;
+    public static final int TABLE_MEGABYTES = Integer.getInteger("chess.bot.tableMegabytes", 8);
+    private static final int THREADS = Integer.getInteger("chess.bot.threads",
+            Math.clamp(Runtime.getRuntime().availableProcessors() / 2, 1, 4));
+
+    /**
+     * Hands a chosen move back to be played like a player's
+     */
+    @FunctionalInterface
+    public interface MovePlayer {
+        /**
+         * Must call {@link #moveLanding} under the game's lock before saving the move, so the
+         * reply it leads to can queue the engine again
+         *
+         * @param positionKey the position the move was chosen for, in case the game has moved on
+         */
+        void play(Integer gameID, ChessMove move, long positionKey) throws Exception;
+    }
+
+    /**
+     * Tells everyone in a game that the engine's move didn't go through
+     */
+    @FunctionalInterface
+    public interface FailureReporter {
+        void report(Integer gameID, String message);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(BotService.class.getName());
+
+    private final ThreadPoolExecutor executor;
+    // Each pool thread keeps one engine, and its transposition table, between moves
+    private final ThreadLocal<Engine> engines;
+    // The games with a move on the way, each marked by a token of its own request
+    private final ConcurrentHashMap<Integer, Object> scheduled = new ConcurrentHashMap<>();
+    private final GameDAO gameDAO;
+    private final MovePlayer player;
+    private final FailureReporter reporter;
+    private final OpeningBook book; // null without one
+    private final Tablebase tablebase; // null without one
+
+    public BotService(GameDAO gameDAO, MovePlayer player, FailureReporter reporter) {
+        this(gameDAO, player, reporter, THREADS, TABLE_MEGABYTES, openBook(), openTablebase());
+    }
+
+    /**
+     * @param threads how many games' moves may be worked out at once
+     * @param tableMegabytes the size of each thread's transposition table
+     * @param book the opening book, or null
+     * @param tablebase the endgame tablebases, or null
+     */
+    public BotService(GameDAO gameDAO, MovePlayer player, FailureReporter reporter, int threads,
+                      int tableMegabytes, OpeningBook book, Tablebase tablebase) {
+        this.engines = ThreadLocal.withInitial(() -> new Engine(tableMegabytes));
+        this.gameDAO = gameDAO;
+        this.player = player;
+        this.reporter = reporter;
+        this.book = book;
+        this.tablebase = tablebase;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Unbounded, but never holds more than one move per bot game
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bot-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return whether the engine has a seat in the game and it is that seat's turn
+     */
+    public static boolean isBotTurn(GameData gameData) {
+        ChessGame game = gameData.game();
+        return !game.gameIsOver() && gameData.isBotSeat(game.getTeamTurn());
+    }
+
+    /**
+     * Queues the engine's reply in a game, unless one is already on the way
+     */
+    public void schedule(Integer gameID) {
+        schedule(gameID, 1);
+    }
+
+    private void schedule(Integer gameID, int attempt) {
+        Object token = new Object();
+        if (scheduled.putIfAbsent(gameID, token) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> run(gameID, token, attempt));
+        } catch (RejectedExecutionException ex) {
+            scheduled.remove(gameID, token);
+            throw ex;
+        }
+    }
+
+    /**
+     * Ends the game's pending request, once its move is about to be saved. Called under the
+     * game's lock, so nothing else can queue the game in between, and a reply that arrives
+     * right after the move is seen is never taken for a duplicate
+     */
+    public void moveLanding(Integer gameID) {
+        scheduled.remove(gameID);
+    }
+
+    private void run(Integer gameID, Object token, int attempt) {
+        Exception failure = null;
+        try {
+            // The game comes fresh from the database, so the search can keep it to itself
+            GameData gameData = gameDAO.getGame(gameID);
+            if (isBotTurn(gameData)) {
+                long positionKey = gameData.game().positionKey();
+                player.play(gameID, chooseMove(gameData.game()), positionKey);
+            }
+        } catch (Exception ex) {
+            failure = ex;
+        } finally {
+            // Normally moveLanding has already cleared this. It still must be cleared when no
+            // move was played. The token keeps this from clearing a request made after the move
+            scheduled.remove(gameID, token);
+        }
+
+        if (failure != null) {
+            // Otherwise the player would wait on the engine's turn for good
+            LOGGER.log(Level.WARNING, "Engine move failed in game " + gameID, failure);
+            if (attempt < MAX_ATTEMPTS) {
+                reporter.report(gameID, "Error: the computer couldn't move (" + failure.getMessage()
+                        + "), trying again");
+                schedule(gameID, attempt + 1);
+            } else {
+                reporter.report(gameID, "Error: the computer couldn't move (" + failure.getMessage()
+                        + "), reconnect to have it try again");
+            }
+        }
+    }
+
+    private ChessMove chooseMove(ChessGame game) {
+        MoveBuffer legalMoves = new MoveBuffer();
+        new ChessRuleBook().generateAllLegalMoves(game.getBoard(), game.getTeamTurn(), legalMoves);
+
+        ChessMove move = book == null ? null
+                : legalOrNull(() -> book.pick(game, ThreadLocalRandom.current()), legalMoves);
+        if (move == null && tablebase != null) {
+            move = legalOrNull(() -> tablebase.bestMove(game.getBoard(), game.getTeamTurn()), legalMoves);
+        }
+        if (move == null) {
+            move = legalOrNull(() -> engines.get().search(game, SearchLimits.time(MOVE_MILLIS)).bestMove(),
+                    legalMoves);
+        }
+        if (move == null) { // it is the engine's turn in a game still going, so there is a move
+            move = PackedMove.toChessMove(legalMoves.get(0));
+        }
+        return move;
+    }
+
+    /**
+     * @return the source's move, or null if it has none, fails, or offers one that isn't legal
+     */
+    private static ChessMove legalOrNull(Supplier<ChessMove> source, MoveBuffer legalMoves) {
+        try {
+            ChessMove move = source.get();
+            return move != null && legalMoves.contains(PackedMove.fromChessMove(move)) ? move : null;
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Engine move source failed, trying the next", ex);
+            return null;
+        }
+    }
+
+    private static OpeningBook openBook() {
+        String path = System.getProperty("chess.book");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(Path.of(path));
+        } catch (IOException ex) {
+            // bot games still work, they just search from move one
+            LOGGER.warning("No opening book for bot games: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private static Tablebase openTablebase() {
+        String path = System.getProperty("chess.tablebases");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Tablebase.open(Path.of(path));
+        } catch (IOException ex) {
+            LOGGER.warning("No tablebases for bot games: " + ex.getMessage());
+            return null;
+        }
+    }
+}
@@ -14,6 +14,9 @@ public class Connection {
     }
 
     public void send(String msg) throws IOException {
-        session.getRemote().sendString(msg);
+        // Analysis threads send too, and a session can only send one message at a time
+        synchronized (session) {
+            session.getRemote().sendString(msg);
+        }
     }
 }
\ No newline at end of file
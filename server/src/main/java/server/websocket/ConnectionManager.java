@@ -72,6 +72,9 @@ public class ConnectionManager {
 
         // Broadcast to users in the game except the one we exclude
         ConcurrentHashMap<String, Connection> gameConnections = gameSessions.get(gameID);
+        if (gameConnections == null) { // everyone has left, e.g. before an analysis finished
+            return;
+        }
         for (String username : gameConnections.keySet()) {
             Connection connection = gameConnections.get(username);
             // Skip closed connections
@@ -15,11 +15,18 @@ import websocket.messages.*;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 
 @WebSocket
 public class WebSocketHandler {
 
     private final ConnectionManager connections = new ConnectionManager();
+    private final AnalysisService analysisService = new AnalysisService();
+    private final BotService botService;
+    // Moves and resignations in one game take turns, whether from a player or the engine.
+    // Games share a fixed set of locks, so nothing has to be cleaned up as games end
+    private static final int GAME_LOCK_COUNT = 64;
+    private final Object[] gameLocks = new Object[GAME_LOCK_COUNT];
     private final GameDAO gameDAO;
     private final UserDAO userDAO;
     private final AuthDAO authDAO;
@@ -28,6 +35,14 @@ public class WebSocketHandler {
         this.gameDAO = gameDAO;
         this.userDAO = userDAO;
         this.authDAO = authDAO;
+        this.botService = new BotService(gameDAO, this::playBotMove, this::reportBotFailure);
+        for (int i = 0; i < GAME_LOCK_COUNT; i++) {
+            gameLocks[i] = new Object();
+        }
+    }
+
+    private Object lockFor(Integer gameID) {
+        return gameLocks[Math.floorMod(gameID, GAME_LOCK_COUNT)];
     }
 
     @OnWebSocketMessage
@@ -50,6 +65,8 @@ public class WebSocketHandler {
                 case MAKE_MOVE -> makeMove(session, username, (MakeMoveCommand) command);
                 case LEAVE -> leaveGame(session, username, command);
                 case RESIGN -> resign(session, username, command);
+                case ANALYZE -> analyze(username, (AnalyzeCommand) command);
+                case CANCEL_ANALYSIS -> cancelAnalysis(username, command);
             }
 
         } catch (UnauthorizedException ex) {
@@ -59,6 +76,10 @@ public class WebSocketHandler {
             } catch (IOException ignore) {
                 // Log this
             }
+        } catch (RejectedExecutionException ex) {
+            // Too many analyses, for this user or the server
+            connections.broadcast(gameID, username, new ErrorMessage(
+                    ex.getMessage()), ConnectionManager.SendType.ONE);
         } catch (InvalidMoveException ex) {
             connections.broadcast(gameID, username, new ErrorMessage(
                     ex.getMessage()), ConnectionManager.SendType.ONE);
@@ -88,14 +109,17 @@ public class WebSocketHandler {
     private record PlayerInfo (PlayerType playerType, ChessGame.TeamColor color) {}
 
     private PlayerInfo getPlayerInfo(String username, Integer gameID) throws DataAccessException {
-        // Get the game and determine if the user is playing + their color or observing
+        // Get the game and determine if the user is playing + their color or observing.
+        // Nobody plays the engine's seat, even with an account that shares its name
         GameData gameData = gameDAO.getGame(gameID);
         ChessGame.TeamColor color = null;
         PlayerType playerType = null;
-        if (Objects.equals(gameData.whiteUsername(), username)) {
+        if (Objects.equals(gameData.whiteUsername(), username)
+                && !gameData.isBotSeat(ChessGame.TeamColor.WHITE)) {
             color = ChessGame.TeamColor.WHITE;
             playerType = PlayerType.PLAYER;
-        } else if (Objects.equals(gameData.blackUsername(), username)) {
+        } else if (Objects.equals(gameData.blackUsername(), username)
+                && !gameData.isBotSeat(ChessGame.TeamColor.BLACK)) {
             color = ChessGame.TeamColor.BLACK;
             playerType = PlayerType.PLAYER;
         } else {
@@ -145,6 +169,14 @@ public class WebSocketHandler {
         connections.broadcast(gameID, username,
                 new NotificationMessage(createConnectMessage(username, playerInfo)),
                 ConnectionManager.SendType.EXCLUDE_ONE);
+
+        // The engine may be waiting to open as white, or to reply after a restart. Checking
+        // under the lock means a move the engine is about to play is already saved or still queued
+        synchronized (lockFor(gameID)) {
+            if (BotService.isBotTurn(gameDAO.getGame(gameID))) {
+                botService.schedule(gameID);
+            }
+        }
     }
 
 
@@ -165,58 +197,132 @@ public class WebSocketHandler {
         Integer gameID = command.getGameID();
         ChessMove move = command.getMove();
 
-        // Get the game and determine if the user is playing (+ their color) or observing
-        PlayerInfo playerInfo = getPlayerInfo(username, gameID);
-        ChessGame.TeamColor color = playerInfo.color();
-        GameData gameData = gameDAO.getGame(gameID);
-        ChessGame game = gameData.game();
+        PlayedMove played;
+        synchronized (lockFor(gameID)) {
+            // Get the game and determine if the user is playing (+ their color) or observing
+            PlayerInfo playerInfo = getPlayerInfo(username, gameID);
+            ChessGame.TeamColor color = playerInfo.color();
+            GameData gameData = gameDAO.getGame(gameID);
+            ChessGame game = gameData.game();
+
+            // Only continue if the user is a player
+            if (playerInfo.playerType == PlayerType.OBSERVER) {
+                throw new DataAccessException("Error: observers cannot make a move");
+            }
+            // Only continue if it is player's turn
+            if (game.getTeamTurn() != color) {
+                throw new InvalidMoveException("Error: it is not your turn!");
+            }
 
-        // Only continue if the user is a player
-        if (playerInfo.playerType == PlayerType.OBSERVER) {
-            throw new DataAccessException("Error: observers cannot make a move");
+            played = applyMove(gameData, username, move);
         }
-        // Only continue if it is player's turn
-        if (game.getTeamTurn() != color) {
-            throw new InvalidMoveException("Error: it is not your turn!");
+        announce(played);
+    }
+
+    /**
+     * Plays the engine's move, called from the bot pool once it has chosen one
+     */
+    private void playBotMove(Integer gameID, ChessMove move, long positionKey)
+            throws DataAccessException, InvalidMoveException {
+        PlayedMove played;
+        synchronized (lockFor(gameID)) {
+            // Done with the request first, so the human's reply to this move can queue the next
+            botService.moveLanding(gameID);
+            GameData gameData = gameDAO.getGame(gameID);
+            // The other player may have resigned while the engine was thinking
+            if (!BotService.isBotTurn(gameData)) {
+                return;
+            }
+            if (gameData.game().positionKey() != positionKey) {
+                botService.schedule(gameID); // still the engine's turn, so think again
+                return;
+            }
+            played = applyMove(gameData, GameData.BOT_USERNAME, move);
         }
+        announce(played);
+    }
+
+    private void reportBotFailure(Integer gameID, String message) {
+        connections.broadcast(gameID, GameData.BOT_USERNAME,
+                new ErrorMessage(message), ConnectionManager.SendType.ALL);
+    }
+
+    /**
+     * A move that has been made and saved, still to be sent to the game
+     *
+     * @param botToMove whether the engine replies, decided while the game was still locked
+     */
+    private record PlayedMove(Integer gameID, String username, ChessMove move, ChessGame.TeamColor color,
+                              ChessGame game, boolean botToMove) {}
+
+    /**
+     * Makes and saves a move. The caller holds the game's lock and has checked it is the
+     * mover's turn, then announces the move once the lock is let go
+     */
+    private PlayedMove applyMove(GameData gameData, String username, ChessMove move)
+            throws DataAccessException, InvalidMoveException {
+        ChessGame game = gameData.game();
+        ChessGame.TeamColor color = game.getTeamTurn();
 
         // Update game
         game.makeMove(move);
-        gameDAO.makeMove(gameID, game);
+        gameDAO.makeMove(gameData.gameID(), game);
+
+        return new PlayedMove(gameData.gameID(), username, move, color, game, BotService.isBotTurn(gameData));
+    }
+
+    /**
+     * Tells everyone in the game about a move. Sending can be slow, so it happens outside the
+     * game's lock, which other games share; the game was read fresh for the move, so no one
+     * else changes it meanwhile
+     */
+    private void announce(PlayedMove played) {
+        Integer gameID = played.gameID();
+        String username = played.username();
+        ChessGame game = played.game();
 
         // Send load_game message to everybody
         connections.broadcast(gameID, username,
                 new LoadGameMessage(game), ConnectionManager.SendType.ALL);
         // send notification telling what move was made
         connections.broadcast(gameID, username,
-                new NotificationMessage(username + " made move " + makeMoveString(move)),
+                new NotificationMessage(username + " made move " + makeMoveString(played.move())),
                 ConnectionManager.SendType.EXCLUDE_ONE);
         // Send notification if in check, or game is over for checkmate or stalemate
-        sendGameOverMessages(gameID, color, username, game);
+        sendGameOverMessages(gameID, played.color(), username, game);
+
+        // The engine's reply is worked out on its own pool, then comes back through playBotMove.
+        // Queued only after the move is sent, so the reply can't reach anyone before it
+        if (played.botToMove()) {
+            botService.schedule(gameID);
+        }
     }
 
     private void sendGameOverMessages(Integer gameID, ChessGame.TeamColor playerColor, String username,
                                       ChessGame game) {
 
-        // Check if game is over
-        if (!game.gameIsOver()) {
-            // check for... check
-            if (game.isInCheck(ChessGame.TeamColor.WHITE)) {
+        // The game worked out its status once when the move was made, so just read it
+        GameState gameState = game.getGameState();
+        if (!gameState.isGameOver()) {
+            // check for... check, which can only be on the team about to move
+            if (gameState.isTeamInCheck()) {
+                String team = gameState.teamTurn() == ChessGame.TeamColor.WHITE ? "White" : "Black";
                 connections.broadcast(gameID, username,
-                        new NotificationMessage("White is in check"),
-                        ConnectionManager.SendType.ALL);
-            } else if (game.isInCheck(ChessGame.TeamColor.BLACK)) {
-                connections.broadcast(gameID, username,
-                        new NotificationMessage("Black is in check"),
+                        new NotificationMessage(team + " is in check"),
                         ConnectionManager.SendType.ALL);
             }
             return;
         }
 
-        GameState.Winner winner = game.getWinner();
+        GameState.Winner winner = gameState.getWinner();
         if (winner == GameState.Winner.DRAW) {
+            String reason = switch (gameState.getEndReason()) {
+                case THREEFOLD_REPETITION -> "threefold repetition";
+                case FIFTY_MOVE_RULE -> "the fifty-move rule";
+                default -> "stalemate";
+            };
             connections.broadcast(gameID, username,
-                    new NotificationMessage("Game ended in stalemate"),
+                    new NotificationMessage("Game ended in a draw by " + reason),
                     ConnectionManager.SendType.ALL);
         } else if (winner == GameState.Winner.BLACK) {
             connections.broadcast(gameID, username,
@@ -255,25 +361,51 @@ public class WebSocketHandler {
         // Get gameID
         Integer gameID = command.getGameID();
 
-        // Get the game and determine if the user is playing (+ their color) or observing
-        PlayerInfo playerInfo = getPlayerInfo(username, gameID);
-        ChessGame.TeamColor color = playerInfo.color();
-        GameData gameData = gameDAO.getGame(gameID);
+        synchronized (lockFor(gameID)) {
+            // Get the game and determine if the user is playing (+ their color) or observing
+            PlayerInfo playerInfo = getPlayerInfo(username, gameID);
+            GameData gameData = gameDAO.getGame(gameID);
 
+            // Only continue if the user is a player
+            if (playerInfo.playerType == PlayerType.OBSERVER) {
+                throw new DataAccessException("Error: observers cannot resign, try LEAVE instead");
+            }
 
-        // Only continue if the user is a player
-        if (playerInfo.playerType == PlayerType.OBSERVER) {
-            throw new DataAccessException("Error: observers cannot resign, try LEAVE instead");
+            // Update game by resigning
+            ChessGame game = gameData.game();
+            game.resign(playerInfo.color());
+            gameDAO.makeMove(gameID, game);
         }
 
-        // Update game by resigning
-        ChessGame game = gameData.game();
-        game.resign(playerInfo.color());
-        gameDAO.makeMove(gameID, game);
-
         // Inform all clients that the player resigned
         connections.broadcast(gameID, username,
                 new NotificationMessage(username + " resigned"),
                 ConnectionManager.SendType.ALL);
     }
+
+
+    private void analyze(String username, AnalyzeCommand command) throws DataAccessException {
+        Integer gameID = command.getGameID();
+        // The game comes fresh from the database, so the analysis can keep it to itself
+        ChessGame game = gameDAO.getGame(gameID).game();
+
+        // The engine mustn't help a player with a game still being played
+        PlayerInfo playerInfo = getPlayerInfo(username, gameID);
+        if (playerInfo.playerType() == PlayerType.PLAYER && !game.gameIsOver()) {
+            throw new DataAccessException("Error: players can only analyze their game once it is over");
+        }
+
+        // Results go back on the analysis thread, only to the user who asked
+        analysisService.start(username, gameID, game, command.getMillis(), message ->
+                connections.broadcast(gameID, username, message, ConnectionManager.SendType.ONE));
+    }
+
+    private void cancelAnalysis(String username, UserGameCommand command) throws DataAccessException {
+        Integer gameID = command.getGameID();
+        if (!analysisService.cancel(username, gameID)) {
+            throw new DataAccessException("Error: no analysis to cancel");
+        }
+        connections.broadcast(gameID, username,
+                new NotificationMessage("Analysis cancelled"), ConnectionManager.SendType.ONE);
+    }
 }
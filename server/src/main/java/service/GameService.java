@@ -37,7 +37,14 @@ public class GameService {
         return new ListResult(resultList, null);
     }
 
-    public record CreateRequest(String gameName) {}
+    /**
+     * @param botColor "WHITE" or "BLACK" for the engine to take that seat, or null for two players
+     */
+    public record CreateRequest(String gameName, String botColor) {
+        public CreateRequest(String gameName) {
+            this(gameName, null);
+        }
+    }
     public record CreateResult(Integer gameID, String message) implements Result {}
 
     public CreateResult createGame(CreateRequest request) {
@@ -47,10 +54,17 @@ public class GameService {
             String message = "Error: bad request";
             return new CreateResult(null, message);
         }
+        String botColor = request.botColor();
+        if (botColor != null && !botColor.equals("WHITE") && !botColor.equals("BLACK")) {
+            return new CreateResult(null, "Error: bad request");
+        }
+
+        // the engine takes its seat now, and moves once someone connects
+        ChessGame.TeamColor color = botColor == null ? null : ChessGame.TeamColor.valueOf(botColor);
 
         GameData newGame;
         try {
-            newGame = gameDAO.createGame(gameName); // return a failed result instead
+            newGame = gameDAO.createGame(gameName, color); // return a failed result instead
         } catch (DataAccessException e) {
             return new CreateResult(null, e.getMessage());
         }
@@ -4,6 +4,7 @@ import dataaccess.AuthDAO;
 import dataaccess.DataAccessException;
 import dataaccess.UserDAO;
 import model.AuthData;
+import model.GameData;
 import model.UserData;
 
 public class UserService {
@@ -25,6 +26,11 @@ public class UserService {
                 String errorMessage = "Error: bad request";
                 return new RegisterResult(null, null, errorMessage);
             }
+            // the engine plays bot games under its own name
+            if (registerRequest.username().equals(GameData.BOT_USERNAME)) {
+                String errorMessage = "Error: already taken";
+                return new RegisterResult(null, null, errorMessage);
+            }
 
             // 1. get user
             String username = registerRequest.username();
@@ -1,5 +1,6 @@
 package service;
 
+import model.GameData;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -102,6 +103,31 @@ class GameServiceTest extends ServiceTest {
         Assertions.assertEquals("Error: already taken", joinResult.message());
     }
 
+    @Test
+    @DisplayName("Create game against the computer")
+    void createBotGame() {
+        // create game with the computer as black
+        GameService.CreateResult createResult = gameService.createGame(
+                new GameService.CreateRequest("gameName", "BLACK"));
+        Assertions.assertNull(createResult.message());
+
+        // black is taken, white is still free
+        GameService.ReducedGameData game = gameService.list().games().getFirst();
+        Assertions.assertEquals(GameData.BOT_USERNAME, game.blackUsername());
+        Assertions.assertNull(game.whiteUsername());
+        GameService.JoinResult joinResult = gameService.join(
+                new GameService.JoinRequest("BLACK", createResult.gameID()), "Bob");
+        Assertions.assertEquals("Error: already taken", joinResult.message());
+        // not even by an account that was registered with the computer's name
+        joinResult = gameService.join(
+                new GameService.JoinRequest("BLACK", createResult.gameID()), GameData.BOT_USERNAME);
+        Assertions.assertEquals("Error: already taken", joinResult.message());
+
+        // the computer can only play white or black
+        createResult = gameService.createGame(new GameService.CreateRequest("gameName", "GREEN"));
+        Assertions.assertEquals("Error: bad request", createResult.message());
+    }
+
     private Integer createOneGame() {
         // create game
         String gameName = "gameName";
@@ -10,14 +10,10 @@ public class BishopMovesCalculator implements PieceMovesCalculator{
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
         ArrayList<ChessMove> moves = new ArrayList<>();
 
-        /* We go out in one direction at a time and stop at the edge of a board
-          or when we encounter another piece
-        */
-        for (int rowDirection: new int[]{-1,1}) { // iterate at most 7 times
-            for  (int colDirection: new int[]{-1,1}) {
-                moveUntilBlocked(board, myPosition, rowDirection, colDirection, moves);
-            }
-        }
+        // slide until the first piece on each ray (see Bitboards), and not onto our own
+        int square = Bitboards.square(myPosition);
+        long attacks = Bitboards.bishopAttacks(square, board.getOccupied());
+        addMoves(myPosition, removeOwnPieces(board, myPosition, attacks), moves);
 
         return moves;
     }
@@ -0,0 +1,36 @@
+package calculators;
+
+import chess.ChessPiece;
+
+/**
+ * Registry of one shared calculator per piece type, indexed by {@link ChessPiece.PieceType#ordinal()}.
+ * <p>
+ * The calculators hold no fields and only read the board they are handed, so a single
+ * instance of each is safe to use from every game thread at once.
+ */
+public final class MoveCalculators {
+    private static final PieceMovesCalculator[] BY_TYPE = new PieceMovesCalculator[ChessPiece.PieceType.values().length];
+    static {
+        for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+            BY_TYPE[type.ordinal()] = switch (type) {
+                case KING -> new KingMovesCalculator();
+                case QUEEN -> new QueenMovesCalculator();
+                case BISHOP -> new BishopMovesCalculator();
+                case KNIGHT -> new KnightMovesCalculator();
+                case ROOK -> new RookMovesCalculator();
+                case PAWN -> new PawnMovesCalculator();
+            };
+        }
+    }
+
+    private MoveCalculators() {
+    }
+
+    /**
+     * @param type the type of piece which is moving
+     * @return the shared calculator for that piece type
+     */
+    public static PieceMovesCalculator forType(ChessPiece.PieceType type) {
+        return BY_TYPE[type.ordinal()];
+    }
+}
@@ -25,7 +25,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
             These next movements are all in one column. We must be sure no piece is in the way
          */
         int nextRow = currentRow + direction;
-        ChessPosition nextPosition = new ChessPosition(nextRow, currentCol);
+        ChessPosition nextPosition = ChessPosition.of(nextRow, currentCol);
 
         addForwardMoves(board, myPosition, nextPosition, nextRow, moves, direction, currentCol, teamColor, currentRow);
 
@@ -48,7 +48,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
 
             if (nextCol >= 1 && nextCol <= 8) { // col on board
                 // Check for piece on diagonal
-                nextPosition = new ChessPosition(nextRow, nextCol);
+                nextPosition = ChessPosition.of(nextRow, nextCol);
                 if (board.getPiece(nextPosition) != null) { // if piece is diagonal to pawn
                     addNormalCaptures(board, myPosition, teamColor, moves, nextPosition, nextRow);
                 } else { // piece is not diagonal to pawn, so en passant is possible
@@ -69,7 +69,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
                 addPromotionMoves(myPosition, nextPosition, moves);
             } else {
                 // normal capture
-                moves.add(new ChessMove(myPosition, nextPosition, null));
+                moves.add(ChessMove.of(myPosition, nextPosition, null));
             }
         }
     }
@@ -77,24 +77,15 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
     private static void addEnPassant(ChessBoard board, ChessPosition myPosition, int currentRow,
                                      int nextCol, ChessPosition nextPosition,
                                      ArrayList<ChessMove> moves) {
-        // Check for en passant: check the last move for a pawn which moved 2 spaces right next to us
-        GameLog log = board.getGameLog();
-        GameLog.LogEntry lastLogEntry = log.getLastMove();
-        if (lastLogEntry != null) { // make sure we aren't checking an empty log
-            ChessPosition lastEndPosition = lastLogEntry.move().getEndPosition();
-            int lastRow = lastEndPosition.getRow();
-            int lastCol = lastEndPosition.getColumn();
-            if (lastRow == currentRow && lastCol == nextCol) {// piece is directly left or right of us
-                ChessPiece.PieceType lastPieceType = lastLogEntry.piece().getPieceType();
-                if (lastPieceType == ChessPiece.PieceType.PAWN) { // piece is a pawn
-                    ChessPosition lastStartPosition = lastLogEntry.move().getStartPosition();
-                    int lastStartRow = lastStartPosition.getRow();
-                    if (Math.abs(lastRow - lastStartRow) == 2) {
-                        ChessMove move = new ChessMove(myPosition, nextPosition, null);
-                        moves.add(move);
-                    }
-                }
-            }
+        // Check for en passant: the board remembers the square a pawn skipped on the last move
+        if (Bitboards.square(nextPosition) != board.getEnPassantSquare()) {
+            return;
+        }
+        ChessPiece capturedPiece = board.getPiece(ChessPosition.of(currentRow, nextCol)); // right next to us
+        ChessPiece pawn = board.getPiece(myPosition);
+        if (capturedPiece != null && capturedPiece.getPieceType() == ChessPiece.PieceType.PAWN
+                && capturedPiece.getTeamColor() != pawn.getTeamColor()) {
+            moves.add(ChessMove.of(myPosition, nextPosition, null));
         }
     }
 
@@ -105,7 +96,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
         if (board.getPiece(nextPosition) == null) { // next space must be empty
             // check if we can move forward, but not to final row
             if (nextRow > 1 && nextRow < 8) { // pawn stays in middle of the board
-                moves.add(new ChessMove(myPosition, nextPosition, null));
+                moves.add(ChessMove.of(myPosition, nextPosition, null));
             } else if (isLastRow(nextRow)) { //we are near the final row
                 addPromotionMoves(myPosition, nextPosition, moves);
             }
@@ -114,12 +105,12 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
             // we can move twice if we are in starting position and space 2 ahead is free
             int rowTwoAhead = nextRow + direction;
             if (rowTwoAhead <= 8 && rowTwoAhead >= 1) {
-                ChessPosition nextnextPosition = new ChessPosition(rowTwoAhead, currentCol);
+                ChessPosition nextnextPosition = ChessPosition.of(rowTwoAhead, currentCol);
                 if (board.getPiece(nextnextPosition) == null) {
                     if (teamColor == ChessGame.TeamColor.WHITE && currentRow == 2) {
-                        moves.add(new ChessMove(myPosition, nextnextPosition, null));
+                        moves.add(ChessMove.of(myPosition, nextnextPosition, null));
                     } else if (teamColor == ChessGame.TeamColor.BLACK && currentRow == 7) {
-                        moves.add(new ChessMove(myPosition, nextnextPosition, null));
+                        moves.add(ChessMove.of(myPosition, nextnextPosition, null));
                     }
                 }
             }
@@ -130,7 +121,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
         // we need a separate move for every possible promotion piece
         for (ChessPiece.PieceType promotionPiece : ChessPiece.PieceType.values()) {
             if (promotionPiece != ChessPiece.PieceType.PAWN && promotionPiece != ChessPiece.PieceType.KING) { // cannot promote to pawn
-                moves.add(new ChessMove(myPosition, nextPosition, promotionPiece));
+                moves.add(ChessMove.of(myPosition, nextPosition, promotionPiece));
             }
         }
     }
@@ -163,7 +154,7 @@ public class PawnMovesCalculator implements PieceMovesCalculator {
         ChessPosition endPosition = move.getEndPosition();
         int startRow = startPosition.getRow();
         int endCol = endPosition.getColumn();
-        return new ChessPosition(startRow, endCol);
+        return ChessPosition.of(startRow, endCol);
     }
 
 }
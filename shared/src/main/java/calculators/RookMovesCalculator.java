@@ -10,20 +10,12 @@ public class RookMovesCalculator implements PieceMovesCalculator{
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
         ArrayList<ChessMove> moves = new ArrayList<>();
 
-        /* We go out in one direction at a time and stop at the edge of a board
-          or when we encounter another piece
-        */
-        for (int rowDirection: new int[]{-1,0,1}) { // iterate at most 7 times
-            for  (int colDirection: new int[]{-1,0,1}) {
-                //make sure direction is not (0, 0)
-                if (Math.abs(rowDirection) + Math.abs(colDirection) == 1) {
-                    moveUntilBlocked(board, myPosition, rowDirection, colDirection, moves);
-                }
-            }
-        }
+        // slide until the first piece on each ray (see Bitboards), and not onto our own
+        int square = Bitboards.square(myPosition);
+        long attacks = Bitboards.rookAttacks(square, board.getOccupied());
+        addMoves(myPosition, removeOwnPieces(board, myPosition, attacks), moves);
 
         return moves;
     }
 
 }
-
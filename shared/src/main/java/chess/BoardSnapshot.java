@@ -0,0 +1,105 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a board's position: one bitboard per piece type and color, the
+ * castling rights, the en passant square and the Zobrist key. Taking one only copies
+ * twelve longs, and since nothing can change it afterwards any number of threads can
+ * read it without locking while the live board keeps moving.
+ */
+public final class BoardSnapshot {
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+
+    private final long[] pieceBitboards;
+    private final int castlingRights;
+    private final int enPassantSquare;
+    private final long zobristKey;
+
+    /**
+     * @param pieceBitboards one bitboard per piece, indexed color.ordinal() * 6 + type.ordinal().
+     *                       The snapshot keeps its own copy
+     */
+    BoardSnapshot(long[] pieceBitboards, int castlingRights, int enPassantSquare, long zobristKey) {
+        this.pieceBitboards = pieceBitboards.clone();
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.zobristKey = zobristKey;
+    }
+
+    /**
+     * @return the piece on a square (see {@link Bitboards}), or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        long bit = Bitboards.bit(square);
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            if ((pieceBitboards[i] & bit) != 0) {
+                return ChessPiece.of(COLORS[i / 6], TYPES[i % 6]);
+            }
+        }
+        return null;
+    }
+
+    public ChessPiece getPiece(ChessPosition position) {
+        return getPiece(Bitboards.square(position));
+    }
+
+    public long getPieces(ChessGame.TeamColor teamColor, ChessPiece.PieceType type) {
+        return pieceBitboards[teamColor.ordinal() * 6 + type.ordinal()];
+    }
+
+    public long getOccupied() {
+        long occupied = 0L;
+        for (long bitboard : pieceBitboards) {
+            occupied |= bitboard;
+        }
+        return occupied;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * @return a new, mutable board with this position, e.g. for an analysis thread to search
+     */
+    public ChessBoard toBoard() {
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            ChessPiece piece = ChessPiece.of(COLORS[i / 6], TYPES[i % 6]);
+            for (long pieces = pieceBitboards[i]; pieces != 0; pieces &= pieces - 1) {
+                board.addPiece(ChessPosition.of(Long.numberOfTrailingZeros(pieces)), piece);
+            }
+        }
+        board.setCastlingRights(castlingRights);
+        board.setEnPassantSquare(enPassantSquare);
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BoardSnapshot that = (BoardSnapshot) o;
+        return zobristKey == that.zobristKey && castlingRights == that.castlingRights
+                && enPassantSquare == that.enPassantSquare && Arrays.equals(pieceBitboards, that.pieceBitboards);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristKey);
+    }
+}
@@ -1,7 +1,5 @@
 package chess;
 
-import calculators.PawnMovesCalculator;
-
 import java.util.*;
 
 /**
@@ -11,8 +9,63 @@ import java.util.*;
  * signature of the existing methods.
  */
 public class ChessBoard {
+    public static final int NO_SQUARE = -1;
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING_RIGHTS = 15;
+
+    // For each square, the castling rights which survive a move from or onto that square
+    private static final int[] CASTLING_RIGHTS_KEPT = new int[64];
+    static {
+        Arrays.fill(CASTLING_RIGHTS_KEPT, ALL_CASTLING_RIGHTS);
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 5)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 8)] &= ~WHITE_KINGSIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 5)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 8)] &= ~BLACK_KINGSIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 1)] &= ~BLACK_QUEENSIDE;
+    }
+
+    // Indexed by the bit number of each castling right: where the king starts and lands,
+    // and where its rook starts
+    private static final int[] CASTLING_KING_FROM = {4, 4, 60, 60};
+    private static final int[] CASTLING_KING_TO = {6, 2, 62, 58};
+    private static final int[] CASTLING_ROOK_FROM = {7, 0, 63, 56};
+
+    private static final int UNDO_CAPACITY = 128;
+
     private ChessPiece[][] squares = new ChessPiece[8][8];
     private GameLog gameLog = new GameLog();
+    private int enPassantSquare = NO_SQUARE;
+    private int castlingRights = ALL_CASTLING_RIGHTS;
+
+    /*
+        Bitboard view of the squares array: one mask per piece type and color, one per team,
+        and one for the whole board. These are transient so only the squares get serialized.
+        indexedSquares remembers which array the masks were built from, so they get rebuilt
+        the first time they are used after squares has been replaced (e.g. by Gson).
+     */
+    private transient long[] pieceBitboards = new long[12];
+    private transient long[] teamBitboards = new long[2];
+    private transient long occupied;
+    private transient long pieceKey; // Zobrist key of just the pieces, see getZobristKey
+    // Running evaluation terms, white minus black, from PieceSquareTables
+    private transient int middlegameScore;
+    private transient int endgameScore;
+    private transient int phase;
+    private transient ChessPiece[][] indexedSquares = squares;
+
+    /*
+        Undo stack for makeMove/unmakeMove. Each record packs the from, to and capture
+        squares with the previous en passant square and castling rights into one long;
+        the piece that moved and the piece it captured sit in parallel arrays.
+     */
+    private transient long[] undoRecords = new long[UNDO_CAPACITY];
+    private transient ChessPiece[] undoMovedPieces = new ChessPiece[UNDO_CAPACITY];
+    private transient ChessPiece[] undoCapturedPieces = new ChessPiece[UNDO_CAPACITY];
+    private transient int undoDepth;
 
     public ChessBoard() {
     }
@@ -26,7 +79,7 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow()-1][position.getColumn()-1] = piece;
+        setSquare(Bitboards.square(position), piece);
     }
 
     /**
@@ -40,48 +93,364 @@ public class ChessBoard {
         return squares[position.getRow()-1][position.getColumn()-1]; // we call the first row 'row 1'
     }
 
+    /**
+     * Gets a chess piece using a square index (see {@link Bitboards})
+     *
+     * @param square index of the square, 0 for a1 through 63 for h8
+     * @return Either the piece on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return squares[square >>> 3][square & 7];
+    }
+
+    /**
+     * Places a piece on a square (or empties it if piece is null), keeping the
+     * bitboards in sync with the squares array
+     */
+    void setSquare(int square, ChessPiece piece) {
+        ensureIndexed();
+        ChessPiece oldPiece = squares[square >>> 3][square & 7];
+        if (oldPiece != null) {
+            removeFromIndex(square, oldPiece);
+        }
+        squares[square >>> 3][square & 7] = piece;
+        if (piece != null) {
+            addToIndex(square, piece);
+        }
+    }
+
+    private void addToIndex(int square, ChessPiece piece) {
+        int index = bitboardIndex(piece.getTeamColor(), piece.getPieceType());
+        toggleBitboards(square, piece, index);
+        middlegameScore += PieceSquareTables.MIDDLEGAME[index][square];
+        endgameScore += PieceSquareTables.ENDGAME[index][square];
+        phase += PieceSquareTables.phaseWeight(piece.getPieceType());
+    }
+
+    private void removeFromIndex(int square, ChessPiece piece) {
+        int index = bitboardIndex(piece.getTeamColor(), piece.getPieceType());
+        toggleBitboards(square, piece, index);
+        middlegameScore -= PieceSquareTables.MIDDLEGAME[index][square];
+        endgameScore -= PieceSquareTables.ENDGAME[index][square];
+        phase -= PieceSquareTables.phaseWeight(piece.getPieceType());
+    }
+
+    private void toggleBitboards(int square, ChessPiece piece, int index) {
+        long bit = Bitboards.bit(square);
+        pieceBitboards[index] ^= bit;
+        teamBitboards[piece.getTeamColor().ordinal()] ^= bit;
+        occupied ^= bit;
+        pieceKey ^= Zobrist.piece(piece, square);
+    }
+
+    private static int bitboardIndex(ChessGame.TeamColor teamColor, ChessPiece.PieceType type) {
+        return teamColor.ordinal() * 6 + type.ordinal();
+    }
+
+    private void ensureIndexed() {
+        if (indexedSquares == squares) {
+            return;
+        }
+        // squares was swapped out from under us, so rebuild every mask from scratch
+        pieceBitboards = new long[12];
+        teamBitboards = new long[2];
+        occupied = 0L;
+        pieceKey = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        indexedSquares = squares;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = getPiece(square);
+            if (piece != null) {
+                addToIndex(square, piece);
+            }
+        }
+    }
+
+    /**
+     * @return bitboard of every piece of one type and color
+     */
+    public long getPieces(ChessGame.TeamColor teamColor, ChessPiece.PieceType type) {
+        ensureIndexed();
+        return pieceBitboards[bitboardIndex(teamColor, type)];
+    }
+
+    /**
+     * @return bitboard of every piece on one team
+     */
+    public long getTeamPieces(ChessGame.TeamColor teamColor) {
+        ensureIndexed();
+        return teamBitboards[teamColor.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupied() {
+        ensureIndexed();
+        return occupied;
+    }
+
+    /**
+     * Gets the Zobrist key of the board: its pieces, effective castling rights and the en passant file.
+     * The piece part is kept up to date as pieces are added and moved, so this is cheap.
+     * The en passant file only counts when an enemy pawn is actually in place to capture,
+     * so positions which play out identically share a key. Side to move is not part of the
+     * board, see {@link ChessGame#positionKey()}
+     *
+     * @return 64-bit key identifying this position, up to rare collisions
+     */
+    public long getZobristKey() {
+        ensureIndexed();
+        long key = pieceKey ^ Zobrist.castling(getEffectiveCastlingRights());
+        if (enPassantSquare != NO_SQUARE) {
+            // A pawn skipping row 3 is white's, so black would be the one capturing it
+            ChessGame.TeamColor capturingColor = Bitboards.row(enPassantSquare) == 3
+                    ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            ChessGame.TeamColor skippingColor = ChessGame.getOtherColor(capturingColor);
+            if ((Bitboards.pawnAttacks(skippingColor, enPassantSquare)
+                    & getPieces(capturingColor, ChessPiece.PieceType.PAWN)) != 0) {
+                key ^= Zobrist.enPassantFile(enPassantSquare & 7);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Scores the position from material and piece-square tables, blending the middlegame
+     * and endgame scores by how much material is left (see {@link PieceSquareTables}).
+     * The terms are kept up to date as pieces move, so this is only a few operations
+     *
+     * @return the score in centipawns, positive when white is ahead
+     */
+    public int getStaticScore() {
+        ensureIndexed();
+        return PieceSquareTables.taper(middlegameScore, endgameScore, phase);
+    }
+
+    /**
+     * @return how much non-pawn material is left, from {@link PieceSquareTables#MAX_PHASE}
+     * at the start of the game down to 0
+     */
+    public int getGamePhase() {
+        ensureIndexed();
+        return phase;
+    }
+
+    /**
+     * @return an immutable copy of this position which other threads can read safely
+     */
+    public BoardSnapshot snapshot() {
+        ensureIndexed();
+        return new BoardSnapshot(pieceBitboards, castlingRights, enPassantSquare, getZobristKey());
+    }
+
     /**
      * Moves a single chess piece
      *
      * @param move to implement, should know beforehand it is valid
      */
     public void movePiece(ChessMove move) {
-        ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition();
-
-        // In case our piece captures an opposing piece, remove the board's reference to it
-        // if the piece is a pawn, check for en passant
-        ChessPiece.PieceType pieceType = this.getPiece(startPosition).getPieceType();
-        ChessPosition opposingPosition;
-        if (pieceType == ChessPiece.PieceType.PAWN) {
-            PawnMovesCalculator pawnCalculator = new PawnMovesCalculator();
-            if (pawnCalculator.moveIsEnPassant(this, move)) {
-                opposingPosition = pawnCalculator.getEnPassantCapturePosition(move);
-            } else {
-                opposingPosition = endPosition;
-            }
-        } else {
-            opposingPosition = endPosition;
+        applyMove(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), false);
+    }
+
+    /**
+     * Plays a move and remembers how to take it back with {@link #unmakeMove()}. Moves
+     * can be stacked as deep as needed, e.g. while checking legality or searching
+     *
+     * @param move to implement, should know beforehand it is valid
+     */
+    public void makeMove(ChessMove move) {
+        applyMove(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), true);
+    }
+
+    /**
+     * Plays a move packed by {@link PackedMove}, so search can make and unmake moves
+     * without materializing ChessMoves. Take it back with {@link #unmakeMove()}
+     *
+     * @param move to implement, should know beforehand it is valid
+     */
+    public void makeMove(int move) {
+        applyMove(PackedMove.from(move), PackedMove.to(move), PackedMove.promotionPiece(move), true);
+    }
+
+    /**
+     * Takes back the most recent move played with {@link #makeMove(ChessMove)} or {@link #makeMove(int)}, restoring
+     * the captured piece, the pawn before promotion, the en passant square and castling rights
+     */
+    public void unmakeMove() {
+        if (undoDepth == 0) {
+            throw new IllegalStateException("No move to unmake");
         }
-        // Remove the potential opposing piece
-        ChessPiece possiblePiece = this.getPiece(opposingPosition); // could be an opposing piece
-        if (possiblePiece != null) {
-            this.addPiece(opposingPosition, null);
+        undoDepth--;
+        long record = undoRecords[undoDepth];
+        ChessPiece movedPiece = undoMovedPieces[undoDepth];
+        ChessPiece capturedPiece = undoCapturedPieces[undoDepth];
+        undoMovedPieces[undoDepth] = null; // don't hold on to pieces we no longer need
+        undoCapturedPieces[undoDepth] = null;
+
+        int from = (int) (record & 0x3F);
+        int to = (int) ((record >>> 6) & 0x3F);
+        int captureSquare = (int) ((record >>> 12) & 0x3F);
+        setSquare(to, null);
+        setSquare(from, movedPiece);
+        if (capturedPiece != null) {
+            setSquare(captureSquare, capturedPiece);
         }
+        if (isCastle(movedPiece, from, to)) { // put the rook back in its corner
+            moveCastlingRook(castleRookEnd(from, to), castleRookStart(from, to));
+        }
+        enPassantSquare = (int) ((record >>> 18) & 0x7F) - 1;
+        castlingRights = (int) ((record >>> 25) & 0xF);
+    }
 
+    private void applyMove(int from, int to, ChessPiece.PieceType promotionPieceType, boolean recordUndo) {
+        ChessPiece movingPiece = getPiece(from);
 
-        // Move the piece
-        ChessPiece movingPiece = getPiece(startPosition); // get piece which is moving
-        ChessPiece.PieceType promotionPieceType = move.getPromotionPiece(); // promotion type
-        if (promotionPieceType != null) { // if promoting the piece, create a new chess piece
-            ChessGame.TeamColor pieceColor = movingPiece.getTeamColor();
-            addPiece(startPosition, null);
-            addPiece(endPosition, new ChessPiece(pieceColor, promotionPieceType));
+        // In case our piece captures an opposing piece, find where it is. A pawn moving
+        // diagonally onto an empty square is capturing en passant, beside where it started
+        int captureSquare = to;
+        boolean pawnMove = movingPiece.getPieceType() == ChessPiece.PieceType.PAWN;
+        if (pawnMove && (from & 7) != (to & 7) && getPiece(to) == null) {
+            captureSquare = (from & ~7) | (to & 7);
+        }
+        ChessPiece capturedPiece = getPiece(captureSquare);
+
+        if (recordUndo) {
+            pushUndo(from, to, captureSquare, movingPiece, capturedPiece);
+        }
+
+        // Remove the captured piece, then move ours (swapping it out if it is promoting)
+        if (capturedPiece != null) {
+            setSquare(captureSquare, null);
+        }
+        setSquare(from, null);
+        if (promotionPieceType != null) {
+            setSquare(to, ChessPiece.of(movingPiece.getTeamColor(), promotionPieceType));
+        } else {
+            setSquare(to, movingPiece);
+        }
+
+        // A pawn that moved two spaces can be captured en passant on the square it skipped
+        if (pawnMove && Math.abs(to - from) == 16) {
+            enPassantSquare = (from + to) / 2;
         } else {
-            addPiece(startPosition, null); // remove reference to moving piece at its starting position
-            addPiece(endPosition, movingPiece);
+            enPassantSquare = NO_SQUARE;
+        }
+        // A castling king brings its rook around to the square it crossed
+        if (isCastle(movingPiece, from, to)) {
+            moveCastlingRook(castleRookStart(from, to), castleRookEnd(from, to));
+        }
+        // Moving from or onto a king or rook's starting square loses those castling rights
+        castlingRights &= CASTLING_RIGHTS_KEPT[from] & CASTLING_RIGHTS_KEPT[to];
+    }
+
+    private static boolean isCastle(ChessPiece movingPiece, int from, int to) {
+        return movingPiece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2;
+    }
+
+    private static int castleRookStart(int kingFrom, int kingTo) {
+        return kingTo > kingFrom ? kingTo + 1 : kingTo - 2;
+    }
+
+    private static int castleRookEnd(int kingFrom, int kingTo) {
+        return (kingFrom + kingTo) / 2;
+    }
+
+    private void moveCastlingRook(int from, int to) {
+        ChessPiece rook = getPiece(from);
+        if (rook != null) {
+            setSquare(from, null);
+            setSquare(to, rook);
+        }
+    }
+
+    private void pushUndo(int from, int to, int captureSquare, ChessPiece movingPiece,
+                          ChessPiece capturedPiece) {
+        if (undoDepth == undoRecords.length) { // only grows for unusually deep lines
+            int capacity = undoRecords.length * 2;
+            undoRecords = Arrays.copyOf(undoRecords, capacity);
+            undoMovedPieces = Arrays.copyOf(undoMovedPieces, capacity);
+            undoCapturedPieces = Arrays.copyOf(undoCapturedPieces, capacity);
+        }
+        undoRecords[undoDepth] = from
+                | ((long) to << 6)
+                | ((long) captureSquare << 12)
+                | ((long) (enPassantSquare + 1) << 18)
+                | ((long) castlingRights << 25);
+        undoMovedPieces[undoDepth] = movingPiece;
+        undoCapturedPieces[undoDepth] = capturedPiece;
+        undoDepth++;
+    }
+
+    /**
+     * @return the square a pawn skipped over on the last move, which can be captured
+     * en passant, or {@link #NO_SQUARE}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * @return the castling rights which have not been lost by moving a king or rook,
+     * as a mask of WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Gets the castling rights which could still be used some time: those not lost by
+     * moving, whose king and rook are still on their starting squares. A board set up
+     * piece by piece starts with every right, so this is what decides castling there
+     *
+     * @return mask of WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE
+     */
+    public int getEffectiveCastlingRights() {
+        int rights = castlingRights;
+        for (int i = 0; i < 4; i++) {
+            if ((rights & (1 << i)) == 0) {
+                continue;
+            }
+            ChessGame.TeamColor teamColor = i < 2 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            if ((getPieces(teamColor, ChessPiece.PieceType.KING) & Bitboards.bit(CASTLING_KING_FROM[i])) == 0
+                    || (getPieces(teamColor, ChessPiece.PieceType.ROOK) & Bitboards.bit(CASTLING_ROOK_FROM[i])) == 0) {
+                rights &= ~(1 << i);
+            }
         }
+        return rights;
+    }
+
+    /**
+     * @return the square the king starts on for one castling right (e.g. WHITE_KINGSIDE)
+     */
+    public static int castlingKingFrom(int castlingRight) {
+        return CASTLING_KING_FROM[Integer.numberOfTrailingZeros(castlingRight)];
+    }
+
+    /**
+     * @return the square the king lands on for one castling right
+     */
+    public static int castlingKingTo(int castlingRight) {
+        return CASTLING_KING_TO[Integer.numberOfTrailingZeros(castlingRight)];
+    }
+
+    /**
+     * @return the square the rook starts on for one castling right
+     */
+    public static int castlingRookFrom(int castlingRight) {
+        return CASTLING_ROOK_FROM[Integer.numberOfTrailingZeros(castlingRight)];
+    }
 
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        this.enPassantSquare = enPassantSquare;
     }
 
 
@@ -89,23 +458,42 @@ public class ChessBoard {
     /** Find the king of a specific team
      *
      * @param teamColor the color of the king to find
-     * @return the position of the correct king
+     * @return the position of the correct king, or null if that team has no king
      */
     public ChessPosition findKing(ChessGame.TeamColor teamColor) {
-        ChessPosition king = null;
-
-        // for each piece on the team, check if it is the king
-        for (BoardIterator<ChessPosition> iterator = this.iterator(teamColor); iterator.hasNext();) {
-            ChessPosition position = iterator.next();
-            ChessPiece piece = this.getPiece(position);
+        int kingSquare = findKingSquare(teamColor);
+        if (kingSquare == NO_SQUARE) {
+            return null;
+        }
+        return ChessPosition.of(kingSquare);
+    }
 
-            if (piece.getPieceType() == ChessPiece.PieceType.KING) { // if this is the king
-                king = position;
-                break;
-            }
+    /** Find the square of a team's king in constant time by reading the king bitboard
+     *
+     * @param teamColor the color of the king to find
+     * @return the king's square index, or NO_SQUARE if that team has no king
+     */
+    public int findKingSquare(ChessGame.TeamColor teamColor) {
+        long kings = getPieces(teamColor, ChessPiece.PieceType.KING);
+        if (kings == 0) {
+            return NO_SQUARE;
         }
+        return Long.numberOfTrailingZeros(kings); // the lowest square, as a full board scan would find
+    }
 
-        return king;
+    /** Copies the squares of one team's pieces into a caller's buffer, in square order,
+     * so callers can walk a team's pieces without allocating
+     *
+     * @param teamColor the color of the pieces to list
+     * @param squaresOut buffer with room for at least 64 squares
+     * @return how many squares were written
+     */
+    public int getPieceSquares(ChessGame.TeamColor teamColor, int[] squaresOut) {
+        int count = 0;
+        for (long pieces = getTeamPieces(teamColor); pieces != 0; pieces &= pieces - 1) {
+            squaresOut[count++] = Long.numberOfTrailingZeros(pieces);
+        }
+        return count;
     }
 
 
@@ -129,34 +517,17 @@ public class ChessBoard {
      * @param <T> T should always be ChessPosition
      */
     public class BoardIterator<T> implements Iterator<ChessPosition> {
-        private final Queue<ChessPosition> placements;
+        private long remaining;
         /**
-         * Initialize the Iterator with a queue of chess pieces on the board
+         * Initialize the Iterator with the team's bitboard, so it only visits occupied squares
          */
         public BoardIterator(ChessGame.TeamColor teamColor) {
-            placements = new LinkedList<>();
-            // Check each square on the board
-            for (int row = 1; row <= 8; row++) {
-                for (int col = 1; col <= 8; col++) {
-                    ChessPosition position = new ChessPosition(row, col);
-                    ChessPiece chessPiece = getPiece(position);
-                    addCorrectPiece(teamColor, chessPiece, position);
-                }
-            }
-        }
-
-        private void addCorrectPiece(ChessGame.TeamColor teamColor, ChessPiece chessPiece,
-                                     ChessPosition position) {
-            if (chessPiece != null) { // If there is a piece
-                if (chessPiece.getTeamColor() == teamColor) {  // and piece is of the correct color
-                    placements.add(position); // add the position to the queue
-                }
-            }
+            remaining = getTeamPieces(teamColor);
         }
 
         @Override
         public boolean hasNext() {
-            return !placements.isEmpty();
+            return remaining != 0;
         }
 
         @Override
@@ -164,7 +535,9 @@ public class ChessBoard {
             if (!hasNext()) {
                 throw new NoSuchElementException("Chess Board Iterator has no more pieces");
             }
-            return placements.remove();
+            int square = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1; // clear the square we are handing out
+            return ChessPosition.of(square);
         }
     }
 
@@ -174,6 +547,7 @@ public class ChessBoard {
      */
     public void resetBoard() {
         this.squares = new ChessPiece[8][8];
+        ensureIndexed();
 
         HashMap<Integer, ChessPiece.PieceType> colToPiece = new HashMap<>();
         colToPiece.put(1, ChessPiece.PieceType.ROOK);
@@ -188,20 +562,23 @@ public class ChessBoard {
 
         // put in rows of pawns
         for (int col = 1; col <= 8; col++) {
-            ChessPosition whitePawn = new ChessPosition(2, col);
-            this.addPiece(whitePawn, new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            ChessPosition whiteSpecial = new ChessPosition(1, col);
-            this.addPiece(whiteSpecial, new ChessPiece(ChessGame.TeamColor.WHITE, colToPiece.get(col)));
+            ChessPosition whitePawn = ChessPosition.of(2, col);
+            this.addPiece(whitePawn, ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            ChessPosition whiteSpecial = ChessPosition.of(1, col);
+            this.addPiece(whiteSpecial, ChessPiece.of(ChessGame.TeamColor.WHITE, colToPiece.get(col)));
 
 
-            ChessPosition blackPawn = new ChessPosition(7, col);
-            this.addPiece(blackPawn, new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-            ChessPosition blackSpecial = new ChessPosition(8, col);
-            this.addPiece(blackSpecial, new ChessPiece(ChessGame.TeamColor.BLACK, colToPiece.get(col)));
+            ChessPosition blackPawn = ChessPosition.of(7, col);
+            this.addPiece(blackPawn, ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            ChessPosition blackSpecial = ChessPosition.of(8, col);
+            this.addPiece(blackSpecial, ChessPiece.of(ChessGame.TeamColor.BLACK, colToPiece.get(col)));
         }
 
-        // reset game log
+        // reset game log and the state that depends on earlier moves
         this.gameLog = new GameLog();
+        this.enPassantSquare = NO_SQUARE;
+        this.castlingRights = ALL_CASTLING_RIGHTS;
+        this.undoDepth = 0;
     }
 
 
@@ -211,10 +588,10 @@ public class ChessBoard {
 
         for (int row = 1; row <= 8; row++) {
             for (int col = 1; col <= 8; col++) {
-                if (this.getPiece(new ChessPosition(row, col)) == null) {
+                if (this.getPiece(ChessPosition.of(row, col)) == null) {
                     str.append("| ");
                 } else {
-                    str.append("|").append(this.getPiece(new ChessPosition(row, col)).toString());
+                    str.append("|").append(this.getPiece(ChessPosition.of(row, col)).toString());
                 }
             }
             str.append("|/n");
@@ -231,11 +608,16 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(squares, that.squares);
+        // Two boards hold the same pieces exactly when every piece bitboard matches. Boards
+        // with different keys can't match, which rules out almost every pair immediately
+        ensureIndexed();
+        that.ensureIndexed();
+        return pieceKey == that.pieceKey && Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        ensureIndexed();
+        return Long.hashCode(pieceKey);
     }
 }
@@ -13,6 +13,8 @@ public class ChessGame {
     private ChessBoard board; // the board on which to play
     private final GameState gameState;
     private final ChessRuleBook ruleBook = new ChessRuleBook();
+    // The latest published view of the game, for other threads to read (see snapshot)
+    private transient volatile GameSnapshot snapshot;
 
     public ChessGame() {
         board = new ChessBoard();
@@ -34,6 +36,8 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         gameState.setTeamTurn(team);
+        gameState.clearHistory(); // earlier positions had the other side to move
+        resetStatus();
     }
 
     /**
@@ -63,7 +67,8 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        return ruleBook.validMoves(this.board, startPosition);
+        // The cache is keyed by position, so moving or swapping the board never returns stale moves
+        return MoveCache.shared().validMoves(this.board, startPosition, ruleBook);
     }
 
     /**
@@ -91,44 +96,44 @@ public class ChessGame {
 
         // If move is valid, put it in place and update whose turn it is
         if (validMoves.contains(move)) {
+            gameState.recordStartingPosition(positionKey());
             gameState.updateTurn();
             ChessPiece oldPiece = board.getPiece(moveStartPosition);
+            ChessPiece capturedPiece = capturedBy(move, oldPiece);
+            // No position from before a capture or pawn move can ever be repeated
+            boolean irreversible = oldPiece.getPieceType() == ChessPiece.PieceType.PAWN || capturedPiece != null;
             board.movePiece(move);
             // add the move to the game log
-            board.getGameLog().addMove(move, oldPiece);
+            board.getGameLog().addMove(move, oldPiece, capturedPiece);
+            gameState.recordMove(irreversible, positionKey());
         } else {
             throw new InvalidMoveException("Error: move given was invalid");
         }
 
         // If move went through, check if the game is over
         checkForGameOver();
+        publishSnapshot();
     }
 
-    private void checkForGameOver() {
-        // Find whose turn it is
-        TeamColor movingColor = gameState.teamTurn();
-        TeamColor otherColor;
-        if (movingColor == TeamColor.WHITE) {
-            otherColor = TeamColor.BLACK;
-        } else {
-            otherColor = TeamColor.WHITE;
+    /**
+     * @return the piece a move will capture, including a pawn taken en passant, or null
+     */
+    private ChessPiece capturedBy(ChessMove move, ChessPiece movingPiece) {
+        ChessPosition end = move.getEndPosition();
+        ChessPiece capturedPiece = board.getPiece(end);
+        if (capturedPiece == null && movingPiece.getPieceType() == ChessPiece.PieceType.PAWN
+                && move.getStartPosition().getColumn() != end.getColumn()) {
+            // en passant: the pawn sits beside where ours started
+            capturedPiece = board.getPiece(ChessPosition.of(move.getStartPosition().getRow(), end.getColumn()));
         }
+        return capturedPiece;
+    }
 
-
-        // Check for stalemate
-        if (isInStalemate(movingColor)) {
-            gameState.setGameIsOver(Boolean.TRUE);
-            gameState.setWinner(GameState.Winner.DRAW);
-        }
-        // Check for checkmate
-        else if (isInCheckmate(movingColor)) {
-            gameState.setGameIsOver(Boolean.TRUE);
-            if (otherColor == TeamColor.WHITE) {
-                gameState.setWinner(GameState.Winner.BLACK);
-            } else {
-                gameState.setWinner(GameState.Winner.WHITE);
-            }
-        }
+    private void checkForGameOver() {
+        // One look at the position tells us check, the number of legal moves, and so
+        // whether the game ended in checkmate or stalemate. Draws by repetition or the
+        // fifty-move rule come from the history recorded as the move was made
+        ruleBook.updateStatus(board, gameState);
     }
 
     public boolean gameIsOver() {
@@ -139,6 +144,13 @@ public class ChessGame {
         return gameState.getWinner();
     }
 
+    /**
+     * @return the turn, result and status of the team to move as of the last move
+     */
+    public GameState getGameState() {
+        return gameState;
+    }
+
     /**
      * Determines if the given team is in check
      *
@@ -149,6 +161,17 @@ public class ChessGame {
         return ruleBook.isInCheck(this.getBoard(), teamColor);
     }
 
+    /**
+     * Determines if a square is attacked by any piece of the given team
+     *
+     * @param position the square to check
+     * @param attackingColor which team may be attacking it
+     * @return True if a piece of attackingColor attacks the square
+     */
+    public boolean isSquareAttacked(ChessPosition position, TeamColor attackingColor) {
+        return ruleBook.isSquareAttacked(this.getBoard(), position, attackingColor);
+    }
+
     /**
      * Determines if the given team is in checkmate
      *
@@ -170,6 +193,17 @@ public class ChessGame {
         return ruleBook.isInStalemate(this.getBoard(), teamColor);
     }
 
+    /**
+     * Gets a 64-bit Zobrist key for the current position: the pieces, side to move,
+     * castling rights and en passant file. It is kept up to date as moves are made, so
+     * caches, repetition detection and storage can key on it cheaply
+     *
+     * @return key identifying the position, up to rare collisions
+     */
+    public long positionKey() {
+        return board.getZobristKey() ^ Zobrist.sideToMove(gameState.teamTurn());
+    }
+
     /**
      * Sets this game's chessboard with a given board
      *
@@ -177,6 +211,17 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        gameState.clearHistory(); // the recorded positions were on the old board
+        resetStatus();
+    }
+
+    /**
+     * Works out the status of a position that was set up rather than reached by a move,
+     * dropping any result the old position decided. A resignation stands
+     */
+    private void resetStatus() {
+        gameState.clearResult();
+        ruleBook.updateStatus(board, gameState);
     }
 
     /**
@@ -200,11 +245,48 @@ public class ChessGame {
 
         // Set game is over flag and determine the winner
         gameState.setGameIsOver(Boolean.TRUE);
+        gameState.setEndReason(GameState.EndReason.RESIGNATION);
         if (color == TeamColor.WHITE) {
             gameState.setWinner(GameState.Winner.BLACK);
         } else if (color == TeamColor.BLACK) {
             gameState.setWinner(GameState.Winner.WHITE);
         }
+        publishSnapshot();
+    }
+
+    /**
+     * Gets an immutable snapshot of the game as it is now. Call this from the thread which
+     * owns the game (e.g. right after making a move); the snapshot itself can then be
+     * handed to any thread. A new snapshot is only built if the game changed since the
+     * last one, which makeMove and resign publish anyway
+     *
+     * @return the current position, turn and status
+     */
+    public GameSnapshot snapshot() {
+        GameSnapshot current = snapshot;
+        if (current == null || current.positionKey() != positionKey()
+                || current.plyCount() != board.getGameLog().size()
+                || current.gameOver() != gameState.isGameOver()) {
+            current = publishSnapshot();
+        }
+        return current;
+    }
+
+    /**
+     * @return the snapshot most recently published by the owning thread, or null if there
+     * hasn't been one yet. Safe to call from any thread
+     */
+    public GameSnapshot latestSnapshot() {
+        return snapshot;
+    }
+
+    private GameSnapshot publishSnapshot() {
+        GameSnapshot current = new GameSnapshot(board.snapshot(), gameState.teamTurn(), positionKey(),
+                board.getGameLog().size(), gameState.isGameOver(), gameState.getWinner(),
+                gameState.getEndReason(), gameState.isTeamInCheck(), gameState.getLegalMoveCount(),
+                gameState.getHalfmoveClock());
+        snapshot = current;
+        return current;
     }
 
 
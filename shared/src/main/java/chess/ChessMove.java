@@ -10,6 +10,29 @@ import java.util.Objects;
  */
 public class ChessMove {
 
+    /*
+        Shared instances of every geometrically possible move: anything a queen or knight
+        could do from a square (which covers every king, rook, bishop and pawn move too),
+        plus each promotion a pawn could make onto the last row
+     */
+    private static final ChessMove[][] MOVES = new ChessMove[64][64];
+    private static final ChessMove[][][] PROMOTIONS = new ChessMove[64][64][];
+    static {
+        for (int from = 0; from < 64; from++) {
+            long reachable = Bitboards.queenAttacks(from, 0L) | Bitboards.knightAttacks(from);
+            for (long targets = reachable; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                MOVES[from][to] = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), null);
+            }
+        }
+        for (int col = 1; col <= 8; col++) {
+            for (int endCol = Math.max(1, col - 1); endCol <= Math.min(8, col + 1); endCol++) {
+                addPromotions(Bitboards.square(7, col), Bitboards.square(8, endCol));
+                addPromotions(Bitboards.square(2, col), Bitboards.square(1, endCol));
+            }
+        }
+    }
+
     private final ChessPosition startPosition;
     private final ChessPosition endPosition;
     private final ChessPiece.PieceType promotionPiece;
@@ -21,6 +44,47 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    private static void addPromotions(int from, int to) {
+        PROMOTIONS[from][to] = new ChessMove[ChessPiece.PieceType.values().length];
+        for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+            if (type != ChessPiece.PieceType.KING && type != ChessPiece.PieceType.PAWN) {
+                PROMOTIONS[from][to][type.ordinal()] = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), type);
+            }
+        }
+    }
+
+    /**
+     * Gets the shared instance of a move instead of allocating a new one
+     *
+     * @return the cached move, or a new one if the move is not geometrically possible
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        int startRow = startPosition.getRow();
+        int startCol = startPosition.getColumn();
+        int endRow = endPosition.getRow();
+        int endCol = endPosition.getColumn();
+        if (startRow < 1 || startRow > 8 || startCol < 1 || startCol > 8
+                || endRow < 1 || endRow > 8 || endCol < 1 || endCol > 8) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        ChessMove move = of(Bitboards.square(startRow, startCol), Bitboards.square(endRow, endCol), promotionPiece);
+        return move != null ? move : new ChessMove(startPosition, endPosition, promotionPiece);
+    }
+
+    /**
+     * Gets the shared instance of a move between two square indexes (see {@link Bitboards})
+     *
+     * @return the cached move, or null if the move is not geometrically possible
+     */
+    public static ChessMove of(int from, int to, ChessPiece.PieceType promotionPiece) {
+        if (promotionPiece == null) {
+            return MOVES[from][to];
+        }
+        ChessMove[] promotions = PROMOTIONS[from][to];
+        return promotions != null ? promotions[promotionPiece.ordinal()] : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {return true;}
@@ -33,7 +97,8 @@ public class ChessMove {
 
     @Override
     public int hashCode() {
-        return Objects.hash(startPosition, endPosition, promotionPiece);
+        int result = 31 * Objects.hashCode(startPosition) + Objects.hashCode(endPosition);
+        return 31 * result + (promotionPiece == null ? 0 : promotionPiece.ordinal() + 1);
     }
 
     /**
@@ -63,7 +128,7 @@ public class ChessMove {
 
 
     public ChessMove reverseMove(ChessPiece.PieceType originalType) {
-        return new ChessMove(this.endPosition, this.startPosition, originalType);
+        return ChessMove.of(this.endPosition, this.startPosition, originalType);
     }
 
     /**
@@ -3,8 +3,6 @@ package chess;
 import calculators.*;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Objects;
 
 /**
  * Represents a single chess piece
@@ -14,6 +12,18 @@ import java.util.Objects;
  */
 public class ChessPiece {
 
+    // One shared instance per color and type, and the letter each one prints as
+    private static final ChessPiece[][] PIECES = new ChessPiece[2][6];
+    private static final String[] WHITE_SYMBOLS = {"K", "Q", "B", "N", "R", "P"};
+    private static final String[] BLACK_SYMBOLS = {"k", "q", "b", "n", "r", "p"};
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type; //might need to be mutable
 
@@ -27,6 +37,14 @@ public class ChessPiece {
         this.type = original.type;
     }
 
+    /**
+     * Gets the shared piece of a color and type instead of allocating a new one. Pieces
+     * are immutable, so one instance can sit on any number of boards
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, PieceType type) {
+        return PIECES[pieceColor.ordinal()][type.ordinal()];
+    }
+
 
     /**
      * The various different chess piece options
@@ -50,7 +68,7 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pieceColor, type);
+        return 31 * pieceColor.ordinal() + type.ordinal();
     }
 
     /**
@@ -69,24 +87,11 @@ public class ChessPiece {
 
     @Override
     public String toString() {
-        HashMap<PieceType, String> map = new HashMap<>();
-        map.put(PieceType.KING, "K");
-        map.put(PieceType.QUEEN, "Q");
-        map.put(PieceType.ROOK, "R");
-        map.put(PieceType.KNIGHT, "N");
-        map.put(PieceType.BISHOP, "B");
-        map.put(PieceType.PAWN, "P");
-
-        ChessGame.TeamColor color = this.getTeamColor();
-        PieceType type = this.getPieceType();
-
-        if (color == ChessGame.TeamColor.BLACK) {
-            return map.get(type).toLowerCase();
+        if (pieceColor == ChessGame.TeamColor.BLACK) {
+            return BLACK_SYMBOLS[type.ordinal()];
         } else {
-            return map.get(type);
+            return WHITE_SYMBOLS[type.ordinal()];
         }
-
-
     }
 
     /**
@@ -97,15 +102,7 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        PieceType type = this.type;
-        PieceMovesCalculator movesCalculator = switch (type) {
-            case KING -> new KingMovesCalculator();
-            case QUEEN -> new QueenMovesCalculator();
-            case BISHOP -> new BishopMovesCalculator();
-            case KNIGHT -> new KnightMovesCalculator();
-            case ROOK -> new RookMovesCalculator();
-            case PAWN -> new PawnMovesCalculator();
-        };
+        PieceMovesCalculator movesCalculator = MoveCalculators.forType(this.type);
 
         return movesCalculator.pieceMoves(board, myPosition);
     }
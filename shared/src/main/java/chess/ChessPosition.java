@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -10,6 +8,14 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
+    // One shared instance per square, indexed the same way as Bitboards squares
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+    static {
+        for (int square = 0; square < 64; square++) {
+            POSITIONS[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +24,28 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Gets the shared position for a square instead of allocating a new one
+     *
+     * @param row 1-8, from the bottom row
+     * @param col 1-8, from the left column
+     * @return the cached position, or a new one if the coordinates are off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return POSITIONS[(row - 1) * 8 + (col - 1)];
+    }
+
+    /**
+     * @param square square index, 0 for a1 through 63 for h8 (see {@link Bitboards})
+     * @return the cached position of the square
+     */
+    public static ChessPosition of(int square) {
+        return POSITIONS[square];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {return true;}
@@ -28,7 +56,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * (31 + row) + col; // same value as Objects.hash(row, col), without boxing
     }
 
     /**
@@ -1,5 +1,6 @@
 package chess;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import static chess.ChessGame.getOtherColor;
@@ -20,15 +21,8 @@ public class ChessRuleBook {
         if (chessPiece == null) {return null;} // null check
         ChessPiece.PieceType type = chessPiece.getPieceType();
 
-        // Use the appropriate moves calculator
-        PieceMovesCalculator movesCalculator = switch (type) {
-            case KING -> new KingMovesCalculator();
-            case QUEEN -> new QueenMovesCalculator();
-            case BISHOP -> new BishopMovesCalculator();
-            case KNIGHT -> new KnightMovesCalculator();
-            case ROOK -> new RookMovesCalculator();
-            case PAWN -> new PawnMovesCalculator();
-        };
+        // Use the shared calculator for this piece type
+        PieceMovesCalculator movesCalculator = MoveCalculators.forType(type);
 
         // Find all potential moves
         return movesCalculator.pieceMoves(board, myPosition);
@@ -36,7 +30,8 @@ public class ChessRuleBook {
 
 
     /**
-     * Filters out moves which leave the king in check
+     * Generates only the legal moves of a piece, using check and pin masks computed once
+     * for the position rather than playing out each move
      *
      * @param board the chess board
      * @param myPosition the position of the piece we consider valid moves for
@@ -44,37 +39,101 @@ public class ChessRuleBook {
      *      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessBoard board, ChessPosition myPosition) {
-        // Get all potential moves
-        Collection<ChessMove> moves = makeMoves(board, myPosition);
-        if (moves == null) {return null;} // null check
-
-        // Get team color and remove moves which leave our king in check
         ChessPiece chessPiece = board.getPiece(myPosition);
-        ChessGame.TeamColor teamColor = chessPiece.getTeamColor();
-        moves.removeIf(move -> movePlacesInCheck(board, move, teamColor));
+        if (chessPiece == null) {return null;} // null check
+
+        MoveBuffer buffer = new MoveBuffer();
+        buffer.generator(board, chessPiece.getTeamColor()).addLegalMoves(Bitboards.square(myPosition), buffer);
+
+        // Only materialize ChessMoves here, at the edge of the API
+        Collection<ChessMove> moves = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            moves.add(PackedMove.toChessMove(buffer.get(i)));
+        }
         return moves;
     }
 
 
+    /**
+     * Fills a buffer with every legal move of a team as packed ints (see {@link PackedMove}).
+     * Reusing the buffer between calls means generation allocates nothing, which is what
+     * search and perft need
+     *
+     * @param board the chess board
+     * @param teamColor the team to move
+     * @param moves the buffer to fill, which is cleared first
+     * @return the number of legal moves
+     */
+    public int generateAllLegalMoves(ChessBoard board, ChessGame.TeamColor teamColor, MoveBuffer moves) {
+        moves.clear();
+        moves.generator(board, teamColor).addAllLegalMoves(moves);
+        return moves.size();
+    }
+
+
+    /**
+     * Checks whether any piece of a team attacks a square, by casting rook and bishop rays
+     * out from the square and looking up knight, pawn and king offsets, instead of
+     * generating every move of the attacking team
+     *
+     * @param board the chess board
+     * @param position the square which may be attacked
+     * @param attackingColor the team which may be attacking it
+     * @return whether a piece of attackingColor attacks the square
+     */
+    public boolean isSquareAttacked(ChessBoard board, ChessPosition position, ChessGame.TeamColor attackingColor) {
+        return isSquareAttacked(board, Bitboards.square(position), attackingColor);
+    }
+
+    public boolean isSquareAttacked(ChessBoard board, int square, ChessGame.TeamColor attackingColor) {
+        return LegalMoveGenerator.attackersTo(board, square, board.getOccupied(), attackingColor) != 0;
+    }
+
+
+    /**
+     * Finds the squares a king can castle to, reading the castling rights and en passant
+     * square kept on the board rather than searching the game log for earlier moves
+     *
+     * @param board the chess board
+     * @param kingPosition where the king is
+     * @return bitboard of the squares the king can castle to (see {@link Bitboards})
+     */
+    public long castlingTargets(ChessBoard board, ChessPosition kingPosition) {
+        ChessPiece king = board.getPiece(kingPosition);
+        if (king == null || king.getPieceType() != ChessPiece.PieceType.KING) {return 0L;}
+        return LegalMoveGenerator.castlingTargets(board, Bitboards.square(kingPosition), king.getTeamColor());
+    }
+
+
+    /**
+     * Works out what a capture wins once both teams have made every recapture worth making
+     * on its square, from attack queries alone (see {@link StaticExchange}). A negative
+     * result means the capture loses material, e.g. a queen taking a defended pawn
+     *
+     * @param board the chess board, before the move
+     * @param move the move to evaluate, which need not be a capture
+     * @return the material gained in centipawns, or 0 if there is no piece to move
+     */
+    public int staticExchange(ChessBoard board, ChessMove move) {
+        return StaticExchange.evaluate(board, Bitboards.square(move.getStartPosition()),
+                Bitboards.square(move.getEndPosition()), move.getPromotionPiece());
+    }
+
+    /**
+     * {@link #staticExchange(ChessBoard, ChessMove)} for a packed move (see {@link PackedMove})
+     */
+    public int staticExchange(ChessBoard board, int move) {
+        return StaticExchange.evaluate(board, PackedMove.from(move), PackedMove.to(move),
+                PackedMove.promotionPiece(move));
+    }
+
+
     public Boolean isInCheck(ChessBoard board,  ChessGame.TeamColor teamColor) {
-        // Find the king
-        ChessPosition ourKingPosition = board.findKing(teamColor);
-
-        /* Check the moves of each piece on the opposing team and see if they can attack the king's cell
-            The endPosition of their move will be the same position as our king
-         */
-        ChessGame.TeamColor otherTeamColor = getOtherColor(teamColor);
-        for (ChessBoard.BoardIterator<ChessPosition> iterator = board.iterator(otherTeamColor); iterator.hasNext();) {
-            ChessPosition opposingPiecePosition = iterator.next();
-            for (ChessMove move: makeMoves(board, opposingPiecePosition)) {
-                ChessPosition endPosition = move.getEndPosition();
-                if (endPosition.equals(ourKingPosition)) { // if the opposing piece can attack the king, return true
-                    return Boolean.TRUE;
-                }
-            }
-        }
+        // Find the king, then see if the other team attacks its square
+        int kingSquare = board.findKingSquare(teamColor);
+        if (kingSquare == ChessBoard.NO_SQUARE) {return Boolean.FALSE;} // no king to attack
 
-        return Boolean.FALSE; // no opposing piece can attack our king
+        return isSquareAttacked(board, kingSquare, getOtherColor(teamColor));
     }
 
 
@@ -86,94 +145,38 @@ public class ChessRuleBook {
      * @return boolean of whether the king is in checkmate
      */
     public Boolean isInCheckmate(ChessBoard board, ChessGame.TeamColor teamColor) {
-        /*
-        We can move out of checkmate by
-            1) moving the king out of check
-            2) blocking the attacking piece
-            3) capture the attacking piece
-        These amount to
-            1) moving the king to each possible position and checking if we are in check
-            and 2) moving each other piece to all possible positions and checking if we are in check
-         */
-
-        if (!isInCheck(board, teamColor)) {return Boolean.FALSE;} // If we aren't even in check, we are not in checkmate
-
-        // Our king is in check. For each position held by this team,
-        for (ChessBoard.BoardIterator<ChessPosition> positionIterator = board.iterator(teamColor); positionIterator.hasNext();) {
-            ChessPosition startPosition = positionIterator.next();
-            // consider all moves the piece at that position could make
-            for (ChessMove move : makeMoves(board, startPosition)) {
-                if (!movePlacesInCheck(board, move, teamColor)) { // If the move does not keep us in check, this is not checkmate
-                    return Boolean.FALSE;
-                }
-            }
-        }
-
-        // If every possible move results in check, return true
-        return Boolean.TRUE;
+        // Checkmate is being in check without a single legal move to get out of it
+        LegalMoveGenerator generator = new LegalMoveGenerator(board, teamColor);
+        return generator.inCheck() && !generator.hasLegalMove();
     }
 
 
     public Boolean isInStalemate(ChessBoard board, ChessGame.TeamColor teamColor) {
+        // Stalemate is having no legal moves while not in check (which would be checkmate)
+        LegalMoveGenerator generator = new LegalMoveGenerator(board, teamColor);
+        return !generator.inCheck() && !generator.hasLegalMove();
+    }
 
-        /*
-            We first check if we are actually in checkmate
-            Then we check every single piece with teamColor, and if at least one has a move, return False
-            otherwise, return True
-        */
-
-        if (isInCheckmate(board, teamColor)) {return Boolean.FALSE;}
-
-        // For each position held by this team,
-        for (ChessBoard.BoardIterator<ChessPosition> positionIterator = board.iterator(teamColor); positionIterator.hasNext();) {
-            ChessPosition myPosition = positionIterator.next();
-            // if a piece can make at least one move, we are not in stalemate
-            if (!validMoves(board, myPosition).isEmpty()) {
-                return Boolean.FALSE;
-            }
-        }
 
-        // This team cannot make any moves
-        return Boolean.TRUE;
+    /**
+     * Analyses the position once for the team about to move, recording whether it is in
+     * check and how many legal moves it has. Checkmate and stalemate both follow from those
+     * two facts, so nothing else needs to look at the board again until the next move
+     *
+     * @param board the chess board
+     * @param gameState the state to update, whose team turn is the team about to move
+     */
+    public void updateStatus(ChessBoard board, GameState gameState) {
+        LegalMoveGenerator generator = new LegalMoveGenerator(board, gameState.teamTurn());
+        gameState.setStatus(generator.inCheck(), generator.countLegalMoves());
     }
 
 
     public Boolean movePlacesInCheck(ChessBoard board, ChessMove move, ChessGame.TeamColor teamColor) {
-        ChessPosition startPosition = move.getStartPosition();
-        ChessPosition endPosition = move.getEndPosition(); // position to which our piece could move
-
-
-        // In case our piece captures an opposing piece, temporarily store it before moving our piece
-        // If the piece is a pawn, check if the move is en passant
-        ChessPiece.PieceType pieceType = board.getPiece(startPosition).getPieceType();
-        ChessPiece possiblePiece;
-        ChessPosition opposingPosition;
-        if (pieceType == ChessPiece.PieceType.PAWN) {
-            PawnMovesCalculator pawnCalculator = new PawnMovesCalculator();
-            if (pawnCalculator.moveIsEnPassant(board, move)) {
-                opposingPosition = pawnCalculator.getEnPassantCapturePosition(move);
-            } else {
-                opposingPosition = endPosition;
-            }
-        } else {
-            opposingPosition = endPosition;
-        }
-        possiblePiece = board.getPiece(opposingPosition); // could be an opposing piece
-
-        // Move our piece, but track our old piece type in case this is a pawn being promoted
-        ChessPiece.PieceType oldType = board.getPiece(startPosition).getPieceType();
-        board.movePiece(move);
-        // Find if we are in check now
-        Boolean inCheck;
-        if (isInCheck(board, teamColor)) {
-            inCheck = Boolean.TRUE;
-        } else {
-            inCheck = Boolean.FALSE;
-        }
-        // Reverse the move
-        ChessMove reverseMove = move.reverseMove(oldType);
-        board.movePiece(reverseMove); // move the piece back where it was
-        board.addPiece(opposingPosition, possiblePiece); // put the piece back which may have been captured
+        // Play the move, see if our king is attacked, then take it back exactly
+        board.makeMove(move);
+        Boolean inCheck = isInCheck(board, teamColor);
+        board.unmakeMove();
 
         return inCheck;
     }
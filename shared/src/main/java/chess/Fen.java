@@ -0,0 +1,157 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g. the starting position
+ * "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1".
+ * <p>
+ * The move counters at the end are optional. The halfmove clock is kept for the
+ * fifty-move rule, but the full move number is not.
+ */
+public final class Fen {
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "pnbrqk";
+    private static final ChessPiece.PieceType[] LETTER_TYPES = {
+            ChessPiece.PieceType.PAWN, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING};
+
+    private Fen() {
+    }
+
+    /**
+     * Sets up a game from a FEN string
+     *
+     * @param fen the position
+     * @return a game with that position and side to move
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static ChessGame load(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("FEN needs pieces, side to move, castling and en passant: " + fen);
+        }
+
+        ChessBoard board = new ChessBoard();
+        String[] rows = fields[0].split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("FEN needs 8 rows: " + fen);
+        }
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i; // FEN lists row 8 first
+            int col = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                    continue;
+                }
+                int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0 || col > 8) {
+                    throw new IllegalArgumentException("Bad row '" + rows[i] + "' in FEN: " + fen);
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(ChessPosition.of(row, col), ChessPiece.of(color, LETTER_TYPES[type]));
+                col++;
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("Bad row '" + rows[i] + "' in FEN: " + fen);
+            }
+        }
+
+        int castlingRights = 0;
+        for (char c : fields[2].toCharArray()) {
+            castlingRights |= switch (c) {
+                case 'K' -> ChessBoard.WHITE_KINGSIDE;
+                case 'Q' -> ChessBoard.WHITE_QUEENSIDE;
+                case 'k' -> ChessBoard.BLACK_KINGSIDE;
+                case 'q' -> ChessBoard.BLACK_QUEENSIDE;
+                case '-' -> 0;
+                default -> throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+            };
+        }
+        board.setCastlingRights(castlingRights);
+        board.setEnPassantSquare(fields[3].equals("-") ? ChessBoard.NO_SQUARE : parseSquare(fields[3], fen));
+
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        if (fields.length > 4) {
+            try {
+                game.getGameState().setHalfmoveClock(Integer.parseInt(fields[4]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad halfmove clock in FEN: " + fen, e);
+            }
+        }
+        // Setting the side to move works out check, checkmate and stalemate, so it goes last
+        switch (fields[1]) {
+            case "w" -> game.setTeamTurn(ChessGame.TeamColor.WHITE);
+            case "b" -> game.setTeamTurn(ChessGame.TeamColor.BLACK);
+            default -> throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        return game;
+    }
+
+    private static int parseSquare(String square, String fen) {
+        if (square.length() != 2 || square.charAt(0) < 'a' || square.charAt(0) > 'h'
+                || square.charAt(1) < '1' || square.charAt(1) > '8') {
+            throw new IllegalArgumentException("Bad square '" + square + "' in FEN: " + fen);
+        }
+        return Bitboards.square(square.charAt(1) - '0', square.charAt(0) - 'a' + 1);
+    }
+
+    /**
+     * @return the game's position as FEN, with the full move number left at 1
+     */
+    public static String toFen(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        StringBuilder fen = new StringBuilder();
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(indexOf(piece.getPieceType()));
+                fen.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? " w " : " b ");
+        int castlingRights = board.getCastlingRights();
+        if (castlingRights == 0) {
+            fen.append('-');
+        }
+        if ((castlingRights & ChessBoard.WHITE_KINGSIDE) != 0) {fen.append('K');}
+        if ((castlingRights & ChessBoard.WHITE_QUEENSIDE) != 0) {fen.append('Q');}
+        if ((castlingRights & ChessBoard.BLACK_KINGSIDE) != 0) {fen.append('k');}
+        if ((castlingRights & ChessBoard.BLACK_QUEENSIDE) != 0) {fen.append('q');}
+
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare == ChessBoard.NO_SQUARE) {
+            fen.append(" -");
+        } else {
+            fen.append(' ').append((char) ('a' + Bitboards.column(enPassantSquare) - 1))
+                    .append(Bitboards.row(enPassantSquare));
+        }
+        return fen.append(' ').append(game.getGameState().getHalfmoveClock()).append(" 1").toString();
+    }
+
+    private static int indexOf(ChessPiece.PieceType type) {
+        for (int i = 0; i < LETTER_TYPES.length; i++) {
+            if (LETTER_TYPES[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown piece type " + type);
+    }
+}
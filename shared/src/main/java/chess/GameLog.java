@@ -1,23 +1,114 @@
 package chess;
 
-import java.util.LinkedList;
-import java.util.Objects;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The moves played in a game, one int per ply.
+ * <p>
+ * The low 15 bits of each entry are the move as packed by {@link PackedMove} (from, to and
+ * promotion), followed by 4 bits for the piece that moved and 4 for the piece it captured
+ * (0 for none). That keeps a whole game in one small array, both on the heap and in the
+ * serialized game, which holds just the played entries (see {@link Serializer}).
+ */
+@JsonAdapter(GameLog.Serializer.class)
 public class GameLog {
-    public record LogEntry(ChessMove move, ChessPiece piece) { }
-    LinkedList<LogEntry> moves = new LinkedList<>();
+    public record LogEntry(ChessMove move, ChessPiece piece, ChessPiece capturedPiece) { }
+
+    private static final int MOVED_PIECE_SHIFT = 15;
+    private static final int CAPTURED_PIECE_SHIFT = 19;
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+
+    private int[] moves = new int[16];
+    private int size = 0;
 
 
     public void addMove(ChessMove move, ChessPiece piece) {
-        moves.add(new LogEntry(move, piece));
+        addMove(move, piece, null);
+    }
+
+    /**
+     * Adds a move to the end of the log
+     *
+     * @param move the move played
+     * @param piece the piece that moved
+     * @param capturedPiece the piece it captured, or null
+     */
+    public void addMove(ChessMove move, ChessPiece piece, ChessPiece capturedPiece) {
+        append(PackedMove.fromChessMove(move)
+                | (pieceCode(piece) << MOVED_PIECE_SHIFT)
+                | (pieceCode(capturedPiece) << CAPTURED_PIECE_SHIFT));
+    }
+
+    private void append(int entry) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(16, moves.length * 2));
+        }
+        moves[size++] = entry;
+    }
+
+    private static int pieceCode(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        return piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal() + 1;
+    }
+
+    private static ChessPiece decodePiece(int code) {
+        if (code == 0) {
+            return null;
+        }
+        return ChessPiece.of(COLORS[(code - 1) / 6], TYPES[(code - 1) % 6]);
+    }
+
+    /**
+     * @return how many plies have been played
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param ply index of the move, 0 for the first move of the game
+     * @return the move, the piece that made it and the piece it captured
+     */
+    public LogEntry getMove(int ply) {
+        if (ply < 0 || ply >= size) {
+            throw new IndexOutOfBoundsException("Ply " + ply + " of " + size);
+        }
+        int entry = moves[ply];
+        return new LogEntry(PackedMove.toChessMove(entry),
+                decodePiece((entry >>> MOVED_PIECE_SHIFT) & 0xF),
+                decodePiece((entry >>> CAPTURED_PIECE_SHIFT) & 0xF));
     }
 
     public LogEntry getLastMove() {
-        return moves.peekLast(); // returns null if there are no moves in the log
+        return size == 0 ? null : getMove(size - 1); // returns null if there are no moves in the log
     }
 
-    public LinkedList<LogEntry> getAllMoves() {
-        return moves;
+    /**
+     * @return every move in the order played, as a new list
+     */
+    public List<LogEntry> getAllMoves() {
+        List<LogEntry> entries = new ArrayList<>(size);
+        for (int ply = 0; ply < size; ply++) {
+            entries.add(getMove(ply));
+        }
+        return entries;
     }
 
     @Override
@@ -29,12 +120,60 @@ public class GameLog {
             return false;
         }
         GameLog gameLog = (GameLog) o;
-        return Objects.equals(moves, gameLog.moves);
+        return Arrays.equals(moves, 0, size, gameLog.moves, 0, gameLog.size);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(moves);
+        int result = 1;
+        for (int ply = 0; ply < size; ply++) {
+            result = 31 * result + moves[ply];
+        }
+        return result;
     }
-}
 
+    /**
+     * Writes the log as {"moves":[...]} with only the played entries. Reads that, the
+     * padded array with a size that came before it, and the list of LogEntry objects
+     * that games stored before the packed log still hold
+     */
+    static final class Serializer extends TypeAdapter<GameLog> {
+        // Plain Gson, for the old entries' moves and pieces
+        private static final Gson LEGACY = new Gson();
+
+        @Override
+        public void write(JsonWriter out, GameLog log) throws IOException {
+            if (log == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject().name("moves").beginArray();
+            for (int ply = 0; ply < log.size; ply++) {
+                out.value(log.moves[ply]);
+            }
+            out.endArray().endObject();
+        }
+
+        @Override
+        public GameLog read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            JsonObject object = JsonParser.parseReader(in).getAsJsonObject();
+            GameLog log = new GameLog();
+            JsonArray entries = object.has("moves") ? object.getAsJsonArray("moves") : new JsonArray();
+            int size = object.has("size") ? object.get("size").getAsInt() : entries.size();
+            for (int ply = 0; ply < size; ply++) {
+                JsonElement entry = entries.get(ply);
+                if (entry.isJsonPrimitive()) {
+                    log.append(entry.getAsInt());
+                } else {
+                    LogEntry old = LEGACY.fromJson(entry, LogEntry.class);
+                    log.addMove(old.move(), old.piece(), old.capturedPiece());
+                }
+            }
+            return log;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package chess;
+
+/**
+ * An immutable view of a game after a move: the position, whose turn it is and the
+ * status worked out for that move. {@link ChessGame} publishes a new one after every
+ * move, so observers, serializers and analysis jobs can read the game from any thread
+ * while the live game keeps changing.
+ *
+ * @param board the position
+ * @param teamTurn the team to move
+ * @param positionKey the Zobrist key of the position including side to move
+ * @param plyCount how many moves have been logged
+ * @param gameOver whether the game has ended
+ * @param winner who won, if the game is over
+ * @param endReason how the game ended, if it is over
+ * @param teamInCheck whether the team to move is in check
+ * @param legalMoveCount how many legal moves the team to move has
+ * @param halfmoveClock moves since the last capture or pawn move
+ */
+public record GameSnapshot(BoardSnapshot board, ChessGame.TeamColor teamTurn, long positionKey, int plyCount,
+                           boolean gameOver, GameState.Winner winner, GameState.EndReason endReason,
+                           boolean teamInCheck, int legalMoveCount, int halfmoveClock) {
+
+    /**
+     * @return a new, independent game in this position, e.g. for an analysis thread to play
+     * moves on. It has no move history, so earlier positions don't count towards repetition
+     */
+    public ChessGame toGame() {
+        ChessGame game = new ChessGame();
+        GameState gameState = game.getGameState();
+        if (endReason == GameState.EndReason.RESIGNATION) {
+            // the one result the position itself doesn't show, which setting it up keeps
+            gameState.setGameIsOver(true);
+            gameState.setEndReason(endReason);
+            gameState.setWinner(winner);
+        }
+        game.setBoard(board.toBoard());
+        gameState.setHalfmoveClock(halfmoveClock);
+        game.setTeamTurn(teamTurn); // works out the status, which the halfmove clock feeds into
+        return game;
+    }
+}
@@ -1,5 +1,6 @@
 package chess;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import static java.lang.Boolean.FALSE;
@@ -18,6 +19,31 @@ public class GameState {
     }
     private Winner winner = Winner.NOT_YET;
 
+    public enum EndReason {
+        NOT_OVER,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        RESIGNATION,
+    }
+    private EndReason endReason = EndReason.NOT_OVER;
+
+    // Status of the team to move, worked out once after each move (see ChessRuleBook.updateStatus)
+    private boolean teamInCheck = false;
+    private int legalMoveCount = 20; // white's moves from the starting position
+
+    /*
+        Draw bookkeeping. The halfmove clock counts moves since the last capture or pawn move,
+        and positionHistory holds the position key after each of those moves (plus the one
+        they started from). No earlier position can ever come back, so the history is
+        cleared along with the clock and never grows past the 101 positions of the fifty-move rule.
+     */
+    public static final int FIFTY_MOVE_HALFMOVES = 100;
+    private int halfmoveClock = 0;
+    private long[] positionHistory = new long[0];
+    private int historySize = 0;
+
     public GameState () {
         this.teamTurn = ChessGame.TeamColor.WHITE; // game starts off with white to move
     }
@@ -80,6 +106,154 @@ public class GameState {
         this.winner = winner;
     }
 
+    public EndReason getEndReason() {
+        return endReason;
+    }
+
+    public void setEndReason(EndReason endReason) {
+        this.endReason = endReason;
+    }
+
+    /**
+     * @return whether the team to move was in check after the last move
+     */
+    public boolean isTeamInCheck() {
+        return teamInCheck;
+    }
+
+    /**
+     * @return how many legal moves the team to move had after the last move
+     */
+    public int getLegalMoveCount() {
+        return legalMoveCount;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Records the position reached by a move
+     *
+     * @param irreversible whether the move was a capture or pawn move, which no earlier
+     *                     position can be repeated past
+     * @param positionKey the key of the position after the move, see ChessGame.positionKey
+     */
+    public void recordMove(boolean irreversible, long positionKey) {
+        if (irreversible) {
+            halfmoveClock = 0;
+            historySize = 0;
+        } else {
+            halfmoveClock++;
+        }
+        addPosition(positionKey);
+    }
+
+    /**
+     * Remembers the position the game starts from, if nothing has been recorded yet
+     */
+    public void recordStartingPosition(long positionKey) {
+        if (historySize == 0) {
+            addPosition(positionKey);
+        }
+    }
+
+    private void addPosition(long positionKey) {
+        if (historySize == positionHistory.length) {
+            positionHistory = Arrays.copyOf(positionHistory, Math.max(8, historySize * 2));
+        }
+        positionHistory[historySize++] = positionKey;
+    }
+
+    /**
+     * @return the position keys since the last capture or pawn move, oldest first, ending
+     * with the current position once a move has been made
+     */
+    public long[] getPositionHistory() {
+        return Arrays.copyOf(positionHistory, historySize);
+    }
+
+    /**
+     * Forgets every recorded position, e.g. when the board is replaced
+     */
+    public void clearHistory() {
+        historySize = 0;
+    }
+
+    /**
+     * Marks the game as not over, ready for setStatus to look at a newly set up position.
+     * A resignation doesn't come from the position, so it stays
+     */
+    public void clearResult() {
+        if (endReason == EndReason.RESIGNATION) {
+            return;
+        }
+        gameIsOver = false;
+        winner = Winner.NOT_YET;
+        endReason = EndReason.NOT_OVER;
+    }
+
+    /**
+     * @return whether the latest position has now occurred three times. Only positions with
+     * the same side to move (every other one) since the last irreversible move can match
+     */
+    public boolean isThreefoldRepetition() {
+        if (historySize < 5) {
+            return false;
+        }
+        long current = positionHistory[historySize - 1];
+        int repeats = 0;
+        for (int i = historySize - 3; i >= 0; i -= 2) {
+            if (positionHistory[i] == current && ++repeats == 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records the status of the team to move, and ends the game if it has no legal moves
+     * (checkmate if it is in check, otherwise stalemate). Otherwise the game is drawn
+     * by the fifty-move rule or a threefold repetition. A resigned game keeps its result
+     *
+     * @param inCheck whether the team to move is in check
+     * @param legalMoveCount how many legal moves the team to move has
+     */
+    public void setStatus(boolean inCheck, int legalMoveCount) {
+        this.teamInCheck = inCheck;
+        this.legalMoveCount = legalMoveCount;
+        if (endReason == EndReason.RESIGNATION) {
+            return;
+        }
+        if (legalMoveCount > 0) {
+            if (halfmoveClock >= FIFTY_MOVE_HALFMOVES) {
+                endInDraw(EndReason.FIFTY_MOVE_RULE);
+            } else if (isThreefoldRepetition()) {
+                endInDraw(EndReason.THREEFOLD_REPETITION);
+            }
+            return;
+        }
+
+        gameIsOver = true;
+        if (!inCheck) {
+            endReason = EndReason.STALEMATE;
+            winner = Winner.DRAW;
+        } else {
+            endReason = EndReason.CHECKMATE;
+            winner = teamTurn == ChessGame.TeamColor.WHITE ? Winner.BLACK : Winner.WHITE;
+        }
+    }
+
+    private void endInDraw(EndReason reason) {
+        gameIsOver = true;
+        endReason = reason;
+        winner = Winner.DRAW;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,294 @@
+package chess;
+
+/**
+ * Generates only legal moves for one team.
+ * <p>
+ * The position is analysed once when the generator is created: which enemy pieces are
+ * giving check, which squares would block or capture a single checker, and which of our
+ * pieces are pinned to the king. Every piece's moves can then be filtered with a couple
+ * of bitboard masks instead of playing each move out and looking for check.
+ * <p>
+ * A generator can be {@link #reset reset} onto another position, so a {@link MoveBuffer}
+ * keeps one around and bulk generation allocates nothing.
+ */
+final class LegalMoveGenerator {
+    private static final ChessPiece.PieceType[] PROMOTION_TYPES = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK};
+
+    private ChessBoard board;
+    private ChessGame.TeamColor teamColor;
+    private ChessGame.TeamColor enemyColor;
+    private int kingSquare;
+    private long ownPieces;
+    private long enemyPieces;
+    private long occupied;
+    private long checkers;
+    private long checkMask; // squares a non-king move must land on to deal with check
+    private long pinned;
+
+    LegalMoveGenerator(ChessBoard board, ChessGame.TeamColor teamColor) {
+        reset(board, teamColor);
+    }
+
+    /**
+     * Analyses a new position, replacing whatever this generator was looking at before
+     */
+    void reset(ChessBoard board, ChessGame.TeamColor teamColor) {
+        this.board = board;
+        this.teamColor = teamColor;
+        this.enemyColor = ChessGame.getOtherColor(teamColor);
+        this.kingSquare = board.findKingSquare(teamColor);
+        this.ownPieces = board.getTeamPieces(teamColor);
+        this.enemyPieces = board.getTeamPieces(enemyColor);
+        this.occupied = board.getOccupied();
+
+        // Without a king nothing can be in check or pinned, so every pseudo-legal move is legal
+        if (kingSquare == ChessBoard.NO_SQUARE) {
+            checkers = 0L;
+            checkMask = ~0L;
+            pinned = 0L;
+            return;
+        }
+
+        checkers = attackersTo(board, kingSquare, occupied, enemyColor);
+        if (checkers == 0) {
+            checkMask = ~0L;
+        } else if (Long.bitCount(checkers) == 1) { // capture the checker or step in front of it
+            checkMask = checkers | Bitboards.between(kingSquare, Long.numberOfTrailingZeros(checkers));
+        } else { // double check, only the king can move
+            checkMask = 0L;
+        }
+
+        // A piece is pinned if it is the only thing between our king and an enemy slider
+        long pinnedPieces = 0L;
+        long snipers = (Bitboards.rookAttacks(kingSquare, 0L) & orthogonalSliders(board, enemyColor))
+                | (Bitboards.bishopAttacks(kingSquare, 0L) & diagonalSliders(board, enemyColor));
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & ownPieces) != 0) {
+                pinnedPieces |= blockers;
+            }
+        }
+        pinned = pinnedPieces;
+    }
+
+    /**
+     * @return every piece of the attacking color which attacks the square, given an occupancy
+     */
+    static long attackersTo(ChessBoard board, int square, long occupied, ChessGame.TeamColor attackerColor) {
+        ChessGame.TeamColor defenderColor = ChessGame.getOtherColor(attackerColor);
+        return (Bitboards.rookAttacks(square, occupied) & orthogonalSliders(board, attackerColor))
+                | (Bitboards.bishopAttacks(square, occupied) & diagonalSliders(board, attackerColor))
+                | (Bitboards.knightAttacks(square) & board.getPieces(attackerColor, ChessPiece.PieceType.KNIGHT))
+                // a pawn attacks this square from wherever a defending pawn here would attack
+                | (Bitboards.pawnAttacks(defenderColor, square) & board.getPieces(attackerColor, ChessPiece.PieceType.PAWN))
+                | (Bitboards.kingAttacks(square) & board.getPieces(attackerColor, ChessPiece.PieceType.KING));
+    }
+
+    private static long orthogonalSliders(ChessBoard board, ChessGame.TeamColor teamColor) {
+        return board.getPieces(teamColor, ChessPiece.PieceType.ROOK)
+                | board.getPieces(teamColor, ChessPiece.PieceType.QUEEN);
+    }
+
+    private static long diagonalSliders(ChessBoard board, ChessGame.TeamColor teamColor) {
+        return board.getPieces(teamColor, ChessPiece.PieceType.BISHOP)
+                | board.getPieces(teamColor, ChessPiece.PieceType.QUEEN);
+    }
+
+    boolean inCheck() {
+        return checkers != 0;
+    }
+
+    /**
+     * @return whether any of our pieces has at least one legal move
+     */
+    boolean hasLegalMove() {
+        for (long pieces = ownPieces; pieces != 0; pieces &= pieces - 1) {
+            if (legalTargets(Long.numberOfTrailingZeros(pieces)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return how many legal moves our team has, counting each promotion piece separately,
+     * without building the moves themselves
+     */
+    int countLegalMoves() {
+        int count = 0;
+        long pawns = board.getPieces(teamColor, ChessPiece.PieceType.PAWN);
+        for (long pieces = ownPieces; pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            long targets = legalTargets(from);
+            count += Long.bitCount(targets);
+            if ((pawns & Bitboards.bit(from)) != 0) { // three extra moves per promotion square
+                count += 3 * Long.bitCount(targets & (Bitboards.RANK_1 | Bitboards.RANK_8));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds every legal move of our team
+     */
+    void addAllLegalMoves(MoveBuffer moves) {
+        for (long pieces = ownPieces; pieces != 0; pieces &= pieces - 1) {
+            addLegalMoves(Long.numberOfTrailingZeros(pieces), moves);
+        }
+    }
+
+    /**
+     * Adds every legal move of the piece on a square, with one move per promotion piece
+     * when a pawn reaches the last row
+     */
+    void addLegalMoves(int from, MoveBuffer moves) {
+        ChessPiece.PieceType type = board.getPiece(from).getPieceType();
+        boolean pawn = type == ChessPiece.PieceType.PAWN;
+        for (long targets = legalTargets(from); targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            int flags = (enemyPieces & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : 0;
+            if (type == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+                flags |= PackedMove.CASTLE;
+            } else if (pawn) {
+                if (to == board.getEnPassantSquare() && (from & 7) != (to & 7)) {
+                    flags |= PackedMove.CAPTURE | PackedMove.EN_PASSANT;
+                } else if (Math.abs(to - from) == 16) {
+                    flags |= PackedMove.DOUBLE_PAWN_PUSH;
+                }
+            }
+            if (pawn && (Bitboards.bit(to) & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+                for (ChessPiece.PieceType promotionType : PROMOTION_TYPES) {
+                    moves.add(PackedMove.encode(from, to, promotionType, flags));
+                }
+            } else {
+                moves.add(PackedMove.encode(from, to, null, flags));
+            }
+        }
+    }
+
+    /**
+     * @return bitboard of the squares the piece on a square can legally move to
+     */
+    long legalTargets(int from) {
+        ChessPiece piece = board.getPiece(from);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            return kingTargets(from);
+        }
+        if (checkMask == 0) { // double check
+            return 0L;
+        }
+
+        long targets = switch (piece.getPieceType()) {
+            case QUEEN -> Bitboards.queenAttacks(from, occupied) & ~ownPieces;
+            case BISHOP -> Bitboards.bishopAttacks(from, occupied) & ~ownPieces;
+            case ROOK -> Bitboards.rookAttacks(from, occupied) & ~ownPieces;
+            case KNIGHT -> Bitboards.knightAttacks(from) & ~ownPieces;
+            case PAWN -> pawnTargets(from);
+            case KING -> 0L; // handled above
+        };
+        targets &= checkMask;
+        if ((pinned & Bitboards.bit(from)) != 0) { // a pinned piece may only slide along the pin
+            targets &= Bitboards.line(kingSquare, from);
+        }
+        return targets | enPassantTarget(from);
+    }
+
+    private long kingTargets(int from) {
+        // Take the king off the board so it can't hide behind itself from a slider
+        long occupiedWithoutKing = occupied ^ Bitboards.bit(from);
+        long targets = Bitboards.kingAttacks(from) & ~ownPieces;
+        for (long candidates = targets; candidates != 0; candidates &= candidates - 1) {
+            int to = Long.numberOfTrailingZeros(candidates);
+            if (attackersTo(board, to, occupiedWithoutKing, enemyColor) != 0) {
+                targets &= ~Bitboards.bit(to);
+            }
+        }
+        return checkers == 0 ? targets | castlingTargets(board, from, teamColor) : targets;
+    }
+
+    /**
+     * Finds where a king can castle to: the right hasn't been lost, the king and rook are on
+     * their starting squares with nothing between them, and the king is not in check and
+     * doesn't cross or land on an attacked square
+     *
+     * @return bitboard of the squares the king can castle to
+     */
+    static long castlingTargets(ChessBoard board, int kingSquare, ChessGame.TeamColor teamColor) {
+        int rights = board.getEffectiveCastlingRights() & (teamColor == ChessGame.TeamColor.WHITE
+                ? ChessBoard.WHITE_KINGSIDE | ChessBoard.WHITE_QUEENSIDE
+                : ChessBoard.BLACK_KINGSIDE | ChessBoard.BLACK_QUEENSIDE);
+        if (rights == 0) {
+            return 0L;
+        }
+
+        ChessGame.TeamColor enemyColor = ChessGame.getOtherColor(teamColor);
+        long occupied = board.getOccupied();
+        if (attackersTo(board, kingSquare, occupied, enemyColor) != 0) {
+            return 0L;
+        }
+        long targets = 0L;
+        for (; rights != 0; rights &= rights - 1) {
+            int right = Integer.lowestOneBit(rights);
+            int kingTo = ChessBoard.castlingKingTo(right);
+            int crossedSquare = (kingSquare + kingTo) / 2;
+            if (ChessBoard.castlingKingFrom(right) == kingSquare
+                    && (Bitboards.between(kingSquare, ChessBoard.castlingRookFrom(right)) & occupied) == 0
+                    && attackersTo(board, crossedSquare, occupied, enemyColor) == 0
+                    && attackersTo(board, kingTo, occupied, enemyColor) == 0) {
+                targets |= Bitboards.bit(kingTo);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Pushes and normal captures. En passant is handled separately since the captured
+     * pawn is not on the target square
+     */
+    private long pawnTargets(int from) {
+        int forward = teamColor == ChessGame.TeamColor.WHITE ? 8 : -8;
+        int startRow = teamColor == ChessGame.TeamColor.WHITE ? 2 : 7;
+        long targets = Bitboards.pawnAttacks(teamColor, from) & enemyPieces;
+
+        int oneAhead = from + forward;
+        if (oneAhead < 0 || oneAhead >= 64) { // a pawn already on the last row can't go further
+            return targets;
+        }
+        if ((occupied & Bitboards.bit(oneAhead)) == 0) {
+            targets |= Bitboards.bit(oneAhead);
+            int twoAhead = oneAhead + forward;
+            if (Bitboards.row(from) == startRow && (occupied & Bitboards.bit(twoAhead)) == 0) {
+                targets |= Bitboards.bit(twoAhead);
+            }
+        }
+        return targets;
+    }
+
+    private long enPassantTarget(int from) {
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare == ChessBoard.NO_SQUARE
+                || board.getPiece(from).getPieceType() != ChessPiece.PieceType.PAWN
+                || (Bitboards.pawnAttacks(teamColor, from) & Bitboards.bit(enPassantSquare)) == 0) {
+            return 0L;
+        }
+        // The pawn being captured sits beside us, on our row and the target's column
+        int capturedSquare = (from & ~7) | (enPassantSquare & 7);
+        ChessPiece capturedPiece = board.getPiece(capturedSquare);
+        if (capturedPiece == null || capturedPiece.getTeamColor() != enemyColor
+                || capturedPiece.getPieceType() != ChessPiece.PieceType.PAWN) {
+            return 0L;
+        }
+        if (kingSquare == ChessBoard.NO_SQUARE) {
+            return Bitboards.bit(enPassantSquare);
+        }
+
+        // Two pawns leave their squares at once, which pin masks can't describe (e.g. both
+        // pawns between our king and a rook on the same row), so check the result directly
+        long occupiedAfter = (occupied ^ Bitboards.bit(from) ^ Bitboards.bit(capturedSquare))
+                | Bitboards.bit(enPassantSquare);
+        long attackers = attackersTo(board, kingSquare, occupiedAfter, enemyColor) & ~Bitboards.bit(capturedSquare);
+        return attackers == 0 ? Bitboards.bit(enPassantSquare) : 0L;
+    }
+}
@@ -0,0 +1,87 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of moves packed into ints (see {@link PackedMove}).
+ * <p>
+ * Callers such as search and perft keep one buffer per ply and clear it between uses,
+ * so generating moves doesn't touch the heap. The buffer also keeps the generator it was
+ * last filled by, so the position analysis can be reused as well.
+ */
+public final class MoveBuffer {
+    // 218 is the most legal moves any chess position is known to have
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+    private LegalMoveGenerator generator;
+
+    public MoveBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveBuffer(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+        }
+        return moves[index];
+    }
+
+    /**
+     * Replaces a move, e.g. while sorting moves in place
+     */
+    public void set(int index, int move) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + size);
+        }
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return whether the buffer holds the move, ignoring flags
+     */
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (PackedMove.sameMove(moves[i], move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return this buffer's generator, analysing the given position for one team
+     */
+    LegalMoveGenerator generator(ChessBoard board, ChessGame.TeamColor teamColor) {
+        if (generator == null) {
+            generator = new LegalMoveGenerator(board, teamColor);
+        } else {
+            generator.reset(board, teamColor);
+        }
+        return generator;
+    }
+}
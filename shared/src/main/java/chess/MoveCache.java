@@ -0,0 +1,106 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the legal moves of a piece, keyed by the board's Zobrist key and
+ * the piece's square. Since the key covers everything a piece's moves depend on, an
+ * entry can never go stale: a move or a new board simply gives a different key. That
+ * also lets every game that reaches the same position (e.g. a common opening) share
+ * entries, so one cache is {@link #shared() shared} by all games.
+ * <p>
+ * Entries sit in a fixed array indexed by the hash of their key, a newer entry replacing
+ * whatever was in its slot. Entries are immutable, so threads can share the cache
+ * without locking.
+ */
+public final class MoveCache {
+    private static final int DEFAULT_CAPACITY = 1 << 14;
+    private static final MoveCache SHARED = new MoveCache(DEFAULT_CAPACITY);
+
+    private record Entry(long key, int square, ChessMove[] moves) { }
+
+    private final Entry[] entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the most entries to hold, rounded up to a power of two
+     */
+    public MoveCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        entries = new Entry[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the cache used by every ChessGame
+     */
+    public static MoveCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the legal moves of a piece, from the cache if this position has been seen
+     *
+     * @param board the chess board
+     * @param position the position of the piece
+     * @param ruleBook generates the moves on a miss
+     * @return a new, modifiable collection of the piece's legal moves, or null if there
+     * is no piece at the position
+     */
+    public Collection<ChessMove> validMoves(ChessBoard board, ChessPosition position, ChessRuleBook ruleBook) {
+        if (board.getPiece(position) == null) {
+            return null;
+        }
+        long key = board.getZobristKey();
+        int square = Bitboards.square(position);
+        int index = index(key, square);
+
+        Entry entry = entries[index];
+        if (entry != null && entry.key() == key && entry.square() == square) {
+            hits.increment();
+            return new ArrayList<>(List.of(entry.moves()));
+        }
+
+        misses.increment();
+        Collection<ChessMove> moves = ruleBook.validMoves(board, position);
+        entries[index] = new Entry(key, square, moves.toArray(new ChessMove[0]));
+        return moves;
+    }
+
+    private int index(long key, int square) {
+        long hash = (key ^ square) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Empties the cache and resets its counters
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return String.format("MoveCache{hits=%d, misses=%d, hitRate=%.1f%%}",
+                hitCount, total - hitCount, total == 0 ? 0.0 : 100.0 * hitCount / total);
+    }
+}
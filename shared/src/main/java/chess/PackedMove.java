@@ -0,0 +1,75 @@
+package chess;
+
+/**
+ * Packs a move into a single int so bulk move generation and search never allocate.
+ * <p>
+ * Bits 0-5 hold the start square and bits 6-11 the end square (see {@link Bitboards}),
+ * bits 12-14 the promotion piece (0 for none, otherwise its ordinal + 1), and the bits
+ * above that are flags describing the move.
+ */
+public final class PackedMove {
+    public static final int CAPTURE = 1 << 15;
+    public static final int EN_PASSANT = 1 << 16;
+    public static final int DOUBLE_PAWN_PUSH = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotionPiece, int flags) {
+        int promotion = promotionPiece == null ? 0 : promotionPiece.ordinal() + 1;
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    /**
+     * Packs a move without any flags, since those depend on the board it is played on
+     */
+    public static int fromChessMove(ChessMove move) {
+        return encode(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), 0);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotionPiece(int move) {
+        int promotion = (move >>> 12) & 0x7;
+        return promotion == 0 ? null : TYPES[promotion - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (0x7 << 12)) != 0;
+    }
+
+    /**
+     * @return whether two packed moves describe the same move, ignoring flags
+     */
+    public static boolean sameMove(int move, int other) {
+        return (move & 0x7FFF) == (other & 0x7FFF);
+    }
+
+    /**
+     * @return the shared ChessMove instance for a packed move
+     */
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(from(move), to(move), promotionPiece(move));
+    }
+
+    public static String toString(int move) {
+        return toChessMove(move).toString();
+    }
+}
@@ -0,0 +1,231 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Perft split across a ForkJoinPool. The root moves (and, with a deeper split, their
+ * replies) become separate tasks, each counting its subtree on its own copy of the board.
+ * <p>
+ * Tasks can share a {@link Table} of subtree counts so a position reached by different
+ * move orders is only counted once. Run it as a main class to see how the count scales
+ * with the number of threads:
+ * <pre>
+ *     java chess.ParallelPerft 6
+ *     java chess.ParallelPerft 5 --table 64 r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1
+ * </pre>
+ */
+public final class ParallelPerft {
+
+    /**
+     * A fixed-size table of subtree counts, keyed by position and depth, which any number
+     * of threads can share without locking. Each slot holds the count and the key XORed
+     * with the count, so a slot torn by two threads writing at once fails the key check and
+     * is treated as a miss rather than returning a wrong count
+     */
+    public static final class Table {
+        private final long[] slots; // pairs of (key ^ count, count)
+        private final int mask;
+
+        /**
+         * @param megabytes roughly how much memory to use, rounded down to a power of two entries
+         */
+        public Table(int megabytes) {
+            int entries = Integer.highestOneBit(Math.max(1, (int) Math.min(1L << 30, megabytes * (1L << 20) / 16)));
+            slots = new long[entries * 2];
+            mask = entries - 1;
+        }
+
+        private static long key(long positionKey, int depth) {
+            return positionKey ^ (depth * 0x9E3779B97F4A7C15L);
+        }
+
+        /**
+         * @return the stored count, or -1 if the position hasn't been counted to this depth
+         */
+        long get(long positionKey, int depth) {
+            long key = key(positionKey, depth);
+            int index = (int) (key & mask) * 2;
+            long check = slots[index];
+            long count = slots[index + 1];
+            return (check ^ count) == key ? count : -1;
+        }
+
+        void put(long positionKey, int depth, long count) {
+            long key = key(positionKey, depth);
+            int index = (int) (key & mask) * 2;
+            slots[index] = key ^ count;
+            slots[index + 1] = count;
+        }
+    }
+
+    private final BoardSnapshot position;
+    private final ChessGame.TeamColor teamTurn;
+    private final ForkJoinPool pool;
+    private final int splitPlies;
+    private final Table table;
+
+    /**
+     * @param game the position to count from, which is copied and never changed
+     * @param pool the pool to run the tasks on
+     * @param splitPlies how many plies from the root to split into separate tasks, at least 1
+     * @param table counts to share between tasks, or null to count every subtree
+     */
+    public ParallelPerft(ChessGame game, ForkJoinPool pool, int splitPlies, Table table) {
+        this.position = game.getBoard().snapshot();
+        this.teamTurn = game.getTeamTurn();
+        this.pool = pool;
+        this.splitPlies = Math.max(1, splitPlies);
+        this.table = table;
+    }
+
+    /**
+     * @return the number of legal move sequences of exactly depth moves
+     */
+    public long count(int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        return pool.invoke(new PerftTask(position, teamTurn, depth, splitPlies));
+    }
+
+    private final class PerftTask extends RecursiveTask<Long> {
+        private final BoardSnapshot position;
+        private final ChessGame.TeamColor color;
+        private final int depth;
+        private final int splitPlies;
+
+        PerftTask(BoardSnapshot position, ChessGame.TeamColor color, int depth, int splitPlies) {
+            this.position = position;
+            this.color = color;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+        }
+
+        @Override
+        protected Long compute() {
+            ChessBoard board = position.toBoard();
+            ChessRuleBook ruleBook = new ChessRuleBook();
+            if (splitPlies == 0 || depth <= 2) { // small enough to count here
+                return new SubtreeCounter(board, ruleBook, depth).count(depth, color, 0);
+            }
+
+            MoveBuffer moves = new MoveBuffer();
+            ruleBook.generateAllLegalMoves(board, color, moves);
+            List<PerftTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                board.makeMove(moves.get(i));
+                tasks.add(new PerftTask(board.snapshot(), ChessGame.getOtherColor(color), depth - 1, splitPlies - 1));
+                board.unmakeMove();
+            }
+
+            long nodes = 0;
+            for (PerftTask task : invokeAll(tasks)) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Counts one subtree on a single thread, like {@link Perft}, checking the shared table
+     */
+    private final class SubtreeCounter {
+        private final ChessBoard board;
+        private final ChessRuleBook ruleBook;
+        private final MoveBuffer[] buffers;
+
+        SubtreeCounter(ChessBoard board, ChessRuleBook ruleBook, int depth) {
+            this.board = board;
+            this.ruleBook = ruleBook;
+            this.buffers = new MoveBuffer[depth];
+            for (int ply = 0; ply < depth; ply++) {
+                buffers[ply] = new MoveBuffer();
+            }
+        }
+
+        long count(int depth, ChessGame.TeamColor color, int ply) {
+            MoveBuffer moves = buffers[ply];
+            int moveCount = ruleBook.generateAllLegalMoves(board, color, moves);
+            if (depth == 1) {
+                return moveCount;
+            }
+
+            // Counting to depth 2 costs about as much as looking it up, so only cache deeper
+            long key = 0L;
+            if (table != null && depth > 2) {
+                key = board.getZobristKey() ^ Zobrist.sideToMove(color);
+                long stored = table.get(key, depth);
+                if (stored >= 0) {
+                    return stored;
+                }
+            }
+
+            long nodes = 0;
+            ChessGame.TeamColor otherColor = ChessGame.getOtherColor(color);
+            for (int i = 0; i < moveCount; i++) {
+                board.makeMove(moves.get(i));
+                nodes += count(depth - 1, otherColor, ply + 1);
+                board.unmakeMove();
+            }
+            if (table != null && depth > 2) {
+                table.put(key, depth, nodes);
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Counts a position with 1, 2, 4... threads up to the number of cores, printing the
+     * speedup over one thread and the efficiency (speedup per thread) for each
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: ParallelPerft <depth> [--split plies] [--table megabytes] [fen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        int splitPlies = 1;
+        int tableMegabytes = 0;
+        int next = 1;
+        while (next < args.length && args[next].startsWith("--")) {
+            switch (args[next]) {
+                case "--split" -> splitPlies = Integer.parseInt(args[next + 1]);
+                case "--table" -> tableMegabytes = Integer.parseInt(args[next + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[next]);
+            }
+            next += 2;
+        }
+        String fen = next < args.length ? String.join(" ", List.of(args).subList(next, args.length)) : Fen.STARTING_POSITION;
+        ChessGame game = Fen.load(fen);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Depth %d, split %d, table %s, %d cores%n%n", depth, splitPlies,
+                tableMegabytes > 0 ? tableMegabytes + " MB" : "off", cores);
+        System.out.printf("%7s %14s %10s %16s %8s %10s%n", "threads", "nodes", "seconds", "nodes/second",
+                "speedup", "efficiency");
+
+        double baseSeconds = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            // A fresh table each run, so later runs don't just read the earlier counts
+            Table table = tableMegabytes > 0 ? new Table(tableMegabytes) : null;
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long start = System.nanoTime();
+            long nodes = new ParallelPerft(game, pool, splitPlies, table).count(depth);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            pool.shutdown();
+
+            if (threads == 1) {
+                baseSeconds = seconds;
+            }
+            double speedup = baseSeconds / seconds;
+            System.out.printf("%7d %,14d %10.3f %,16.0f %8.2f %9.0f%%%n", threads, nodes, seconds,
+                    nodes / seconds, speedup, 100 * speedup / threads);
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package chess;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth ("perft"). Comparing the
+ * counts with published values is the standard way to check a move generator, and the
+ * nodes per second it reaches is a good measure of the generator's speed.
+ * <p>
+ * Run it with a depth and optional FEN to print the count below each root move
+ * ("divide"), or with "suite" to check every reference position:
+ * <pre>
+ *     java chess.Perft 5
+ *     java chess.Perft 4 8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1
+ *     java chess.Perft suite
+ * </pre>
+ */
+public final class Perft {
+
+    public record ReferencePosition(String name, String fen, int depth, long nodes) { }
+
+    /**
+     * Well known positions with their published perft counts, chosen to cover castling,
+     * promotion, en passant (including the discovered check cases), pins and stalemate
+     */
+    public static final List<ReferencePosition> REFERENCE_POSITIONS = List.of(
+            new ReferencePosition("starting position", Fen.STARTING_POSITION, 5, 4_865_609L),
+            new ReferencePosition("kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    4, 4_085_603L),
+            new ReferencePosition("position 3", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674_624L),
+            new ReferencePosition("position 4", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    4, 422_333L),
+            new ReferencePosition("position 5", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    4, 2_103_487L),
+            new ReferencePosition("position 6",
+                    "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3_894_594L),
+            new ReferencePosition("short castle gives check", "5k2/8/8/8/8/8/8/4K2R w K - 0 1", 6, 661_072L),
+            new ReferencePosition("long castle gives check", "3k4/8/8/8/8/8/8/R3K3 w Q - 0 1", 6, 803_711L),
+            new ReferencePosition("castling rights lost to capture", "r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1",
+                    4, 1_274_206L),
+            new ReferencePosition("castling prevented", "r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1", 4, 1_720_476L),
+            new ReferencePosition("illegal en passant 1", "3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1", 6, 1_134_888L),
+            new ReferencePosition("illegal en passant 2", "8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1", 6, 1_015_133L),
+            new ReferencePosition("en passant gives check", "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", 6, 1_440_467L),
+            new ReferencePosition("promote out of check", "2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1", 6, 3_821_001L),
+            new ReferencePosition("discovered check", "8/8/1P2K3/8/2n5/1q6/8/5k2 b - - 0 1", 5, 1_004_658L),
+            new ReferencePosition("promote to give check", "4k3/1P6/8/8/8/8/K7/8 w - - 0 1", 6, 217_342L),
+            new ReferencePosition("underpromote to give check", "8/P1k5/K7/8/8/8/8/8 w - - 0 1", 6, 92_683L),
+            new ReferencePosition("self stalemate", "K1k5/8/P7/8/8/8/8/8 w - - 0 1", 6, 2_217L),
+            new ReferencePosition("stalemate and checkmate 1", "8/k1P5/8/1K6/8/8/8/8 w - - 0 1", 7, 567_584L),
+            new ReferencePosition("stalemate and checkmate 2", "8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1", 4, 23_527L)
+    );
+
+    private final ChessRuleBook ruleBook = new ChessRuleBook();
+    private final ChessBoard board;
+    private final ChessGame.TeamColor teamTurn;
+    private MoveBuffer[] buffers = new MoveBuffer[0]; // one per ply, reused across the whole count
+
+    /**
+     * @param game the position to count from. Its board is used directly, and is back in
+     *             its original position after every count
+     */
+    public Perft(ChessGame game) {
+        this.board = game.getBoard();
+        this.teamTurn = game.getTeamTurn();
+    }
+
+    /**
+     * @return the number of legal move sequences of exactly depth moves
+     */
+    public long count(int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        ensureBuffers(depth);
+        return count(depth, teamTurn, 0);
+    }
+
+    /**
+     * @return the count below each legal root move, in generation order
+     */
+    public Map<ChessMove, Long> divide(int depth) {
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        if (depth <= 0) {
+            return counts;
+        }
+        ensureBuffers(depth);
+        MoveBuffer moves = buffers[0];
+        ruleBook.generateAllLegalMoves(board, teamTurn, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            counts.put(PackedMove.toChessMove(move),
+                    depth == 1 ? 1L : count(depth - 1, ChessGame.getOtherColor(teamTurn), 1));
+            board.unmakeMove();
+        }
+        return counts;
+    }
+
+    private long count(int depth, ChessGame.TeamColor color, int ply) {
+        MoveBuffer moves = buffers[ply];
+        int moveCount = ruleBook.generateAllLegalMoves(board, color, moves);
+        if (depth == 1) { // every legal move is a leaf, no need to play them
+            return moveCount;
+        }
+
+        long nodes = 0;
+        ChessGame.TeamColor otherColor = ChessGame.getOtherColor(color);
+        for (int i = 0; i < moveCount; i++) {
+            board.makeMove(moves.get(i));
+            nodes += count(depth - 1, otherColor, ply + 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private void ensureBuffers(int depth) {
+        if (buffers.length >= depth) {
+            return;
+        }
+        MoveBuffer[] grown = new MoveBuffer[depth];
+        System.arraycopy(buffers, 0, grown, 0, buffers.length);
+        for (int ply = buffers.length; ply < depth; ply++) {
+            grown[ply] = new MoveBuffer();
+        }
+        buffers = grown;
+    }
+
+    /**
+     * Counts a reference position and compares it with the published count
+     *
+     * @return whether the counts agree
+     */
+    public static boolean check(ReferencePosition position) {
+        return new Perft(Fen.load(position.fen())).count(position.depth()) == position.nodes();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: Perft <depth> [fen] | Perft suite");
+            return;
+        }
+        if (args[0].equals("suite")) {
+            runSuite();
+            return;
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        String fen = args.length > 1 ? String.join(" ", List.of(args).subList(1, args.length)) : Fen.STARTING_POSITION;
+        Perft perft = new Perft(Fen.load(fen));
+
+        long start = System.nanoTime();
+        Map<ChessMove, Long> counts = perft.divide(depth);
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        for (Map.Entry<ChessMove, Long> entry : counts.entrySet()) {
+            System.out.printf("%s: %d%n", entry.getKey(), entry.getValue());
+            total += entry.getValue();
+        }
+        System.out.printf("%nMoves: %d%nNodes: %d%n", counts.size(), total);
+        printSpeed(total, elapsed);
+    }
+
+    private static void runSuite() {
+        long totalNodes = 0;
+        long totalTime = 0;
+        boolean allPassed = true;
+        for (ReferencePosition position : REFERENCE_POSITIONS) {
+            Perft perft = new Perft(Fen.load(position.fen()));
+            long start = System.nanoTime();
+            long nodes = perft.count(position.depth());
+            long elapsed = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalTime += elapsed;
+
+            boolean passed = nodes == position.nodes();
+            allPassed &= passed;
+            System.out.printf("%-32s depth %d: %,13d %s%n", position.name(), position.depth(), nodes,
+                    passed ? "ok" : "FAILED, expected " + position.nodes());
+        }
+        System.out.println();
+        printSpeed(totalNodes, totalTime);
+        if (!allPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static void printSpeed(long nodes, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("Time: %.3f s%nNodes per second: %,.0f%n", seconds, nodes / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,107 @@
+package chess;
+
+/**
+ * Static exchange evaluation: works out what a capture wins or loses once both teams
+ * have finished recapturing on its square, without making any moves.
+ * <p>
+ * Each team recaptures with its least valuable attacker, and either team may stop
+ * whenever carrying on would lose it material. Attackers behind a piece that has
+ * already captured (a rook behind a rook, a bishop behind a queen) join in as the
+ * occupancy is cleared. Pins are ignored, which is the usual trade for speed.
+ */
+final class StaticExchange {
+    private static final int KING_VALUE = 20_000;
+    private static final int[] VALUES = new int[6];
+    private static final ChessPiece.PieceType[] CHEAPEST_FIRST = {
+            ChessPiece.PieceType.PAWN, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING};
+    // A capture sequence can't be longer than the number of pieces on the board
+    private static final int MAX_EXCHANGES = 33;
+
+    static {
+        for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+            VALUES[type.ordinal()] = type == ChessPiece.PieceType.KING ? KING_VALUE : PieceSquareTables.pieceValue(type);
+        }
+    }
+
+    private StaticExchange() {
+    }
+
+    /**
+     * @param board the position before the move
+     * @param from the square of the moving piece
+     * @param to the square it moves to
+     * @param promotion the piece a pawn promotes to, or null
+     * @return the material the moving team gains in centipawns, negative if it loses some,
+     * or 0 if there is no piece on from
+     */
+    static int evaluate(ChessBoard board, int from, int to, ChessPiece.PieceType promotion) {
+        ChessPiece mover = board.getPiece(from);
+        if (mover == null) {return 0;}
+
+        long occupied = board.getOccupied();
+        int[] gain = new int[MAX_EXCHANGES];
+        ChessPiece victim = board.getPiece(to);
+        if (victim != null) {
+            gain[0] = VALUES[victim.getPieceType().ordinal()];
+        } else if (mover.getPieceType() == ChessPiece.PieceType.PAWN && to == board.getEnPassantSquare()
+                && Bitboards.column(from) != Bitboards.column(to)) {
+            gain[0] = VALUES[ChessPiece.PieceType.PAWN.ordinal()];
+            // the captured pawn sits beside the moving one, and may have been blocking a slider
+            occupied ^= Bitboards.bit(Bitboards.square(Bitboards.row(from), Bitboards.column(to)));
+        }
+
+        int onSquare = VALUES[mover.getPieceType().ordinal()];
+        if (promotion != null) {
+            gain[0] += VALUES[promotion.ordinal()] - onSquare;
+            onSquare = VALUES[promotion.ordinal()];
+        }
+        occupied ^= Bitboards.bit(from);
+
+        ChessGame.TeamColor side = ChessGame.getOtherColor(mover.getTeamColor());
+        int depth = 0;
+        while (depth + 1 < MAX_EXCHANGES) {
+            // Recomputing attackers from the shrinking occupancy brings in x-ray attackers
+            long attackers = LegalMoveGenerator.attackersTo(board, to, occupied, side) & occupied;
+            if (attackers == 0) {break;}
+
+            ChessPiece.PieceType type = null;
+            long attacker = 0;
+            for (ChessPiece.PieceType candidate : CHEAPEST_FIRST) {
+                long pieces = attackers & board.getPieces(side, candidate);
+                if (pieces != 0) {
+                    type = candidate;
+                    attacker = Long.lowestOneBit(pieces);
+                    break;
+                }
+            }
+            occupied ^= attacker;
+
+            ChessGame.TeamColor otherSide = ChessGame.getOtherColor(side);
+            if (type == ChessPiece.PieceType.KING
+                    && (LegalMoveGenerator.attackersTo(board, to, occupied, otherSide) & occupied) != 0) {
+                break; // the king can't capture onto a defended square
+            }
+
+            depth++;
+            gain[depth] = onSquare - gain[depth - 1];
+            onSquare = VALUES[type.ordinal()];
+            if (type == ChessPiece.PieceType.PAWN && (Bitboards.row(to) == 1 || Bitboards.row(to) == 8)) {
+                int queen = VALUES[ChessPiece.PieceType.QUEEN.ordinal()];
+                gain[depth] += queen - onSquare;
+                onSquare = queen;
+            }
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break; // neither side wants to carry on
+            }
+            side = otherSide;
+        }
+
+        // Walk back up the sequence, letting each side stop if capturing would lose material
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+}
@@ -0,0 +1,310 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Endgame tablebases: the exact result and distance to mate of every position with a
+ * small set of pieces, worked out ahead of time by {@link TablebaseGenerator}.
+ * <p>
+ * Each material set, e.g. KQK or KBNK, is a file named after it with one byte per
+ * position. A position's index is the side to move followed by 6 bits for the square
+ * of each piece, in the order white king, white pieces, black king, black pieces (the
+ * pieces ordered like {@link ChessPiece.PieceType}). Positions with the colors reversed
+ * are looked up in the same file by mirroring the board. The byte is {@link #DRAW}, or
+ * one more than the number of plies until mate: odd when the side to move is being
+ * mated, even when it is mating.
+ * <p>
+ * Files are memory-mapped, so opening them is instant and every thread can probe them
+ * without locking. Positions with castling rights aren't covered, and the generator
+ * doesn't play en passant, so neither are positions where it might be possible.
+ */
+public final class Tablebase {
+    /**
+     * The most pieces, kings included, a table can have: with 4 a table is 32MB
+     */
+    public static final int MAX_PIECES = 4;
+    public static final String FILE_EXTENSION = ".tb";
+
+    static final int DRAW = 0;
+    static final int ILLEGAL = 255;
+    static final int MAX_PLIES = 253;
+
+    private static final String PIECE_LETTERS = "KQBNRP"; // by PieceType ordinal
+
+    public enum Outcome {WIN, DRAW, LOSS}
+
+    /**
+     * A tablebase answer, for the side to move
+     *
+     * @param outcome whether the side to move wins, draws or loses with best play
+     * @param pliesToMate how many plies until mate with best play, or 0 for a draw
+     */
+    public record Result(Outcome outcome, int pliesToMate) { }
+
+    private final Map<String, ByteBuffer> tables;
+
+    Tablebase(Map<String, ByteBuffer> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps every table in a directory
+     *
+     * @param directory where the {@link TablebaseGenerator} wrote its files
+     * @return the tablebase, which may be empty
+     * @throws IOException if the directory or a table can't be read, or a table is the wrong size
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Map<String, ByteBuffer> tables = new ConcurrentHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String signature = fileName.substring(0, fileName.length() - FILE_EXTENSION.length());
+                tables.put(signature, map(file, pieceCodes(signature).length));
+            }
+        }
+        return new Tablebase(tables);
+    }
+
+    private static MappedByteBuffer map(Path file, int pieceCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != tableSize(pieceCount)) {
+                throw new IOException("Error: " + file + " is not a complete table");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return whether this tablebase has a table for the material set, in either color
+     */
+    public boolean covers(String signature) {
+        int[] codes = pieceCodes(signature);
+        return tables.containsKey(signature(codes)) || tables.containsKey(signature(flip(codes)));
+    }
+
+    public Result probe(ChessGame game) {
+        return probe(game.getBoard(), game.getTeamTurn());
+    }
+
+    /**
+     * @param board the position
+     * @param teamTurn the side to move
+     * @return the result with best play, or null if the position isn't covered
+     */
+    public Result probe(ChessBoard board, ChessGame.TeamColor teamTurn) {
+        boolean enPassantPossible = board.getEnPassantSquare() != ChessBoard.NO_SQUARE
+                && board.getPieces(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN) != 0
+                && board.getPieces(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN) != 0;
+        if (board.getEffectiveCastlingRights() != 0 || enPassantPossible
+                || Long.bitCount(board.getOccupied()) > MAX_PIECES) {
+            return null;
+        }
+        int[] codes = new int[MAX_PIECES];
+        int[] squares = new int[MAX_PIECES];
+        int count = pieces(board, codes, squares);
+        int value = lookup(tables, Arrays.copyOf(codes, count), Arrays.copyOf(squares, count), teamTurn.ordinal());
+        return value < 0 || value == ILLEGAL ? null : decode(value);
+    }
+
+    /**
+     * Finds the move which keeps the best result: the quickest mate when winning, the
+     * slowest when losing, and any drawing move otherwise
+     *
+     * @return the move, or null if the position isn't covered or has no legal moves
+     */
+    public ChessMove bestMove(ChessBoard board, ChessGame.TeamColor teamTurn) {
+        if (probe(board, teamTurn) == null) {
+            return null;
+        }
+        ChessBoard copy = board.snapshot().toBoard();
+        MoveBuffer moves = new MoveBuffer();
+        int moveCount = new ChessRuleBook().generateAllLegalMoves(copy, teamTurn, moves);
+        ChessGame.TeamColor otherColor = ChessGame.getOtherColor(teamTurn);
+        int bestMove = 0;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < moveCount; i++) {
+            copy.makeMove(moves.get(i));
+            Result reply = probe(copy, otherColor);
+            copy.unmakeMove();
+            int rank = reply == null ? 0 : rank(reply);
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = moves.get(i);
+            }
+        }
+        return moveCount == 0 ? null : PackedMove.toChessMove(bestMove);
+    }
+
+    /**
+     * Ranks the opponent's result after a move, higher being better for us
+     */
+    private static int rank(Result reply) {
+        return switch (reply.outcome()) {
+            case LOSS -> 1000 - reply.pliesToMate();
+            case DRAW -> 0;
+            case WIN -> -1000 + reply.pliesToMate();
+        };
+    }
+
+    static Result decode(int value) {
+        if (value == DRAW) {
+            return new Result(Outcome.DRAW, 0);
+        }
+        int plies = value - 1;
+        return new Result((plies & 1) == 0 ? Outcome.LOSS : Outcome.WIN, plies);
+    }
+
+
+    /*
+        Indexing, shared with the generator
+     */
+
+    static long tableSize(int pieceCount) {
+        return 2L << (6 * pieceCount);
+    }
+
+    static int index(int[] squares, int sideToMove) {
+        int index = sideToMove;
+        for (int square : squares) {
+            index = (index << 6) | square;
+        }
+        return index;
+    }
+
+    /**
+     * Reads a position's value from whichever table covers it, mirroring the board if
+     * only the table with the colors reversed exists
+     *
+     * @param codes the pieces, as color.ordinal() * 6 + type.ordinal(), in table order
+     * @return the value byte, {@link #DRAW} for material which can't mate, or -1 if no table covers it
+     */
+    static int lookup(Map<String, ByteBuffer> tables, int[] codes, int[] squares, int sideToMove) {
+        ByteBuffer table = tables.get(signature(codes));
+        if (table != null) {
+            return table.get(index(squares, sideToMove)) & 0xFF;
+        }
+        if (cannotMate(codes)) {
+            return DRAW;
+        }
+
+        int[] flippedCodes = flip(codes);
+        table = tables.get(signature(flippedCodes));
+        if (table == null) {
+            return -1;
+        }
+        // Mirroring swaps the colors, which moves the black pieces in front of the white ones
+        int[] flippedSquares = new int[squares.length];
+        int whiteCount = countWhite(codes);
+        int blackCount = squares.length - whiteCount;
+        for (int i = 0; i < blackCount; i++) {
+            flippedSquares[i] = squares[whiteCount + i] ^ 56;
+        }
+        for (int i = 0; i < whiteCount; i++) {
+            flippedSquares[blackCount + i] = squares[i] ^ 56;
+        }
+        return table.get(index(flippedSquares, sideToMove ^ 1)) & 0xFF;
+    }
+
+    /**
+     * Collects a board's pieces in table order
+     *
+     * @return how many pieces there are
+     */
+    static int pieces(ChessBoard board, int[] codesOut, int[] squaresOut) {
+        int count = 0;
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                long pieces = board.getPieces(color, type);
+                while (pieces != 0) {
+                    codesOut[count] = color.ordinal() * 6 + type.ordinal();
+                    squaresOut[count] = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses a material set like KQK or KBNK: the white pieces starting with the white
+     * king, then the black pieces starting with the black king
+     *
+     * @return the pieces in table order
+     * @throws IllegalArgumentException if the set isn't two kings plus at most {@link #MAX_PIECES} pieces in all
+     */
+    static int[] pieceCodes(String signature) {
+        int blackKing = signature.indexOf('K', 1);
+        if (!signature.startsWith("K") || blackKing < 0 || signature.indexOf('K', blackKing + 1) >= 0
+                || signature.length() > MAX_PIECES) {
+            throw new IllegalArgumentException("Error: bad material set " + signature);
+        }
+        int[] codes = new int[signature.length()];
+        for (int i = 0; i < codes.length; i++) {
+            int type = PIECE_LETTERS.indexOf(signature.charAt(i));
+            if (type < 0) {
+                throw new IllegalArgumentException("Error: bad material set " + signature);
+            }
+            codes[i] = (i < blackKing ? 0 : 6) + type;
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    static String signature(int[] codes) {
+        StringBuilder signature = new StringBuilder(codes.length);
+        for (int code : codes) {
+            signature.append(PIECE_LETTERS.charAt(code % 6));
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return the same pieces with the colors swapped, in table order
+     */
+    static int[] flip(int[] codes) {
+        int[] flipped = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            flipped[i] = codes[i] < 6 ? codes[i] + 6 : codes[i] - 6;
+        }
+        Arrays.sort(flipped);
+        return flipped;
+    }
+
+    /**
+     * @return whether neither side has enough material to ever mate
+     */
+    static boolean cannotMate(int[] codes) {
+        int minorPieces = 0;
+        for (int code : codes) {
+            ChessPiece.PieceType type = ChessPiece.PieceType.values()[code % 6];
+            switch (type) {
+                case KING -> { }
+                case BISHOP, KNIGHT -> minorPieces++;
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return minorPieces <= 1;
+    }
+
+    private static int countWhite(int[] codes) {
+        int count = 0;
+        while (count < codes.length && codes[count] < 6) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,455 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates {@link Tablebase} files by retrograde analysis.
+ * <p>
+ * Every position of a material set gets a slot. The first pass marks the impossible
+ * positions and the checkmates. Each pass after that works one ply further back from
+ * mate: an odd pass finds the positions where the side to move can reach a position
+ * lost in one ply fewer, and an even pass finds the positions where every move reaches
+ * a position the opponent wins. A pass only writes values the same pass never reads,
+ * so its positions are split across a ForkJoinPool with no locking. Whatever is left
+ * when the passes stop finding anything is a draw.
+ * <p>
+ * Captures and promotions leave the material set, so the tables they lead to are
+ * generated first (or loaded, if already in the directory). Run it as a main class:
+ * <pre>
+ *     java chess.TablebaseGenerator tablebases KQK KRK KPK KBNK
+ * </pre>
+ */
+public final class TablebaseGenerator {
+    private static final int CHUNK = 1 << 14;
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+    private static final ChessPiece.PieceType[] PROMOTION_TYPES = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK};
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                PIECES[color.ordinal() * 6 + type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    private final Path directory;
+    private final ForkJoinPool pool;
+    private final Map<String, ByteBuffer> tables = new HashMap<>();
+    private final Map<String, Integer> longestMates = new HashMap<>();
+
+    /**
+     * @param directory where to write the tables, and look for ones already generated
+     * @param pool the pool to run the passes on
+     */
+    public TablebaseGenerator(Path directory, ForkJoinPool pool) {
+        this.directory = directory;
+        this.pool = pool;
+    }
+
+    /**
+     * Generates the table for a material set, after any tables it depends on
+     *
+     * @param signature the material set, e.g. KQK: the white king and pieces, then the black king and pieces
+     * @return the table's file
+     * @throws IllegalArgumentException if the material set isn't valid, or has more than {@link Tablebase#MAX_PIECES}
+     * @throws IOException if a table can't be written or read
+     */
+    public Path generate(String signature) throws IOException {
+        int[] codes = Tablebase.pieceCodes(signature);
+        if (Tablebase.cannotMate(codes)) {
+            throw new IllegalArgumentException("Error: " + signature + " is always a draw");
+        }
+        return file(table(codes));
+    }
+
+    /**
+     * @return the longest mate in a generated table, in plies
+     */
+    public int longestMate(String signature) {
+        return longestMates.getOrDefault(signature, 0);
+    }
+
+    private Path file(String signature) {
+        return directory.resolve(signature + Tablebase.FILE_EXTENSION);
+    }
+
+    /**
+     * Makes sure the table for some material, or the one with the colors reversed, is ready
+     *
+     * @return the signature of the table which covers it, or null if the material can't mate
+     */
+    private String table(int[] codes) throws IOException {
+        String signature = Tablebase.signature(codes);
+        String flippedSignature = Tablebase.signature(Tablebase.flip(codes));
+        if (Tablebase.cannotMate(codes)) {
+            return null;
+        }
+        for (String existing : new String[]{signature, flippedSignature}) {
+            if (tables.containsKey(existing)) {
+                return existing;
+            }
+            if (Files.exists(file(existing))) {
+                load(existing);
+                return existing;
+            }
+        }
+
+        // Give white the extra material, so KRK is generated rather than KKR
+        int whiteCount = 0;
+        for (int code : codes) {
+            whiteCount += code < 6 ? 1 : 0;
+        }
+        if (whiteCount * 2 < codes.length) {
+            codes = Tablebase.flip(codes);
+            signature = flippedSignature;
+        }
+
+        for (int[] exit : exits(codes)) {
+            table(exit);
+        }
+
+        byte[] values = solve(codes);
+        Path temporary = Files.createTempFile(directory, signature, ".tmp");
+        Files.write(temporary, values);
+        Files.move(temporary, file(signature), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        tables.put(signature, ByteBuffer.wrap(values));
+        longestMates.put(signature, longestMate(tables.get(signature)));
+        return signature;
+    }
+
+    private void load(String signature) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(signature), StandardOpenOption.READ)) {
+            if (channel.size() != Tablebase.tableSize(signature.length())) {
+                throw new IOException("Error: " + file(signature) + " is not a complete table");
+            }
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            tables.put(signature, table);
+            longestMates.put(signature, longestMate(table));
+        }
+    }
+
+    private static int longestMate(ByteBuffer table) {
+        int longest = 0;
+        for (int i = 0; i < table.capacity(); i++) {
+            int value = table.get(i) & 0xFF;
+            if (value != Tablebase.ILLEGAL) {
+                longest = Math.max(longest, value - 1);
+            }
+        }
+        return longest;
+    }
+
+    private byte[] solve(int[] codes) {
+        byte[] values = new byte[(int) Tablebase.tableSize(codes.length)];
+        // A capture or promotion can lead to a mate this far away, so keep going at least this long
+        int longestExit = 0;
+        for (int[] exit : exits(codes)) {
+            String exitTable = tableFor(exit);
+            longestExit = Math.max(longestExit, exitTable == null ? 0 : longestMates.get(exitTable));
+        }
+
+        pool.invoke(new Pass(codes, values, 0, 0, values.length));
+        int quietPasses = 0;
+        for (int plies = 1; plies <= Tablebase.MAX_PLIES && (quietPasses < 2 || plies <= longestExit + 2); plies++) {
+            long found = pool.invoke(new Pass(codes, values, plies, 0, values.length));
+            quietPasses = found == 0 ? quietPasses + 1 : 0;
+        }
+        return values;
+    }
+
+    /**
+     * @return the material sets a capture or promotion can lead to
+     */
+    private static List<int[]> exits(int[] codes) {
+        List<int[]> exits = new ArrayList<>();
+        for (int i = 0; i < codes.length; i++) {
+            ChessPiece.PieceType type = ChessPiece.PieceType.values()[codes[i] % 6];
+            if (type == ChessPiece.PieceType.KING) {
+                continue;
+            }
+            exits.add(withoutPiece(codes, i));
+            if (type == ChessPiece.PieceType.PAWN) {
+                for (ChessPiece.PieceType promotion : PROMOTION_TYPES) {
+                    int[] promoted = codes.clone();
+                    promoted[i] = codes[i] - type.ordinal() + promotion.ordinal();
+                    Arrays.sort(promoted);
+                    exits.add(promoted);
+                }
+            }
+        }
+        return exits;
+    }
+
+    private String tableFor(int[] codes) {
+        if (tables.containsKey(Tablebase.signature(codes))) {
+            return Tablebase.signature(codes);
+        }
+        String flipped = Tablebase.signature(Tablebase.flip(codes));
+        return tables.containsKey(flipped) ? flipped : null;
+    }
+
+    private static int[] withoutPiece(int[] codes, int removed) {
+        int[] remaining = new int[codes.length - 1];
+        for (int i = 0, j = 0; i < codes.length; i++) {
+            if (i != removed) {
+                remaining[j++] = codes[i];
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * One pass over a range of positions
+     */
+    private final class Pass extends RecursiveTask<Long> {
+        private final int[] codes;
+        private final byte[] values;
+        private final int plies;
+        private final int start;
+        private final int end;
+
+        Pass(int[] codes, byte[] values, int plies, int start, int end) {
+            this.codes = codes;
+            this.values = values;
+            this.plies = plies;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute() {
+            if (end - start > CHUNK) {
+                int middle = (start + end) >>> 1;
+                Pass left = new Pass(codes, values, plies, start, middle);
+                Pass right = new Pass(codes, values, plies, middle, end);
+                left.fork();
+                return right.compute() + left.join();
+            }
+
+            Worker worker = new Worker(codes, values);
+            long found = 0;
+            for (int index = start; index < end; index++) {
+                int value = plies == 0 ? worker.classify(index) : worker.retract(index, plies);
+                if (value != Tablebase.DRAW) {
+                    values[index] = (byte) value;
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Looks at positions on its own board, so each leaf task needs one
+     */
+    private final class Worker {
+        private final int[] codes;
+        private final byte[] values;
+        private final int pieceCount;
+        private final int[] squares;
+        private final int[] placed;
+        private final boolean[] bareKing = new boolean[2];
+        private final ChessBoard board = new ChessBoard();
+        private final ChessRuleBook ruleBook = new ChessRuleBook();
+        private final MoveBuffer moves = new MoveBuffer();
+
+        Worker(int[] codes, byte[] values) {
+            this.codes = codes;
+            this.values = values;
+            this.pieceCount = codes.length;
+            this.squares = new int[pieceCount];
+            this.placed = new int[pieceCount];
+            bareKing[0] = true;
+            bareKing[1] = true;
+            for (int code : codes) {
+                if (code % 6 != ChessPiece.PieceType.KING.ordinal()) {
+                    bareKing[code / 6] = false;
+                }
+            }
+            board.setCastlingRights(0);
+            Arrays.fill(placed, ChessBoard.NO_SQUARE);
+        }
+
+        /**
+         * First pass: spots impossible positions and checkmates
+         */
+        int classify(int index) {
+            if (!setUp(index)) {
+                return Tablebase.ILLEGAL;
+            }
+            ChessGame.TeamColor color = sideToMove(index);
+            ChessGame.TeamColor otherColor = ChessGame.getOtherColor(color);
+            // The side which just moved can't have left its king in check
+            if (ruleBook.isSquareAttacked(board, board.findKingSquare(otherColor), color)) {
+                return Tablebase.ILLEGAL;
+            }
+            if (ruleBook.generateAllLegalMoves(board, color, moves) == 0 && ruleBook.isInCheck(board, color)) {
+                return 1; // mated, 0 plies to go
+            }
+            return Tablebase.DRAW;
+        }
+
+        /**
+         * Later passes: finds whether the position is won or lost in exactly plies
+         *
+         * @return the new value, or {@link Tablebase#DRAW} if it isn't decided yet
+         */
+        int retract(int index, int plies) {
+            if (values[index] != Tablebase.DRAW) {
+                return Tablebase.DRAW;
+            }
+            int side = index >>> (6 * pieceCount);
+            boolean findingWins = (plies & 1) == 1;
+            // A bare king can't win, so its side never needs a winning move
+            if (bareKing[findingWins ? side : side ^ 1]) {
+                return Tablebase.DRAW;
+            }
+
+            setUp(index);
+            int moveCount = ruleBook.generateAllLegalMoves(board, sideToMove(index), moves);
+            if (moveCount == 0) {
+                return Tablebase.DRAW; // stalemate
+            }
+            for (int i = 0; i < moveCount; i++) {
+                int child = childValue(moves.get(i), side);
+                if (findingWins && child == plies) {
+                    return plies + 1; // a move to a position lost in plies - 1
+                }
+                boolean childWins = child != Tablebase.DRAW && (child & 1) == 0;
+                if (!findingWins && (!childWins || child > plies)) {
+                    return Tablebase.DRAW; // a move which doesn't lose, or not yet
+                }
+            }
+            return findingWins ? Tablebase.DRAW : plies + 1;
+        }
+
+        /**
+         * @return the value of the position after a move, for the opponent
+         */
+        private int childValue(int move, int side) {
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            int[] childSquares = squares.clone();
+            int moved = 0;
+            int captured = -1;
+            for (int i = 0; i < pieceCount; i++) {
+                if (squares[i] == from) {
+                    moved = i;
+                } else if (squares[i] == to) {
+                    captured = i;
+                }
+            }
+            childSquares[moved] = to;
+            if (captured < 0 && !PackedMove.isPromotion(move)) {
+                return values[Tablebase.index(childSquares, side ^ 1)] & 0xFF;
+            }
+
+            // The move leaves this material set, so look the position up in a smaller table
+            int[] childCodes = codes.clone();
+            if (PackedMove.isPromotion(move)) {
+                childCodes[moved] = (codes[moved] / 6) * 6 + PackedMove.promotionPiece(move).ordinal();
+            }
+            if (captured >= 0) {
+                childCodes = withoutPiece(childCodes, captured);
+                childSquares = withoutPiece(childSquares, captured);
+            }
+            sortTogether(childCodes, childSquares);
+            int value = Tablebase.lookup(tables, childCodes, childSquares, side ^ 1);
+            return value < 0 ? Tablebase.DRAW : value;
+        }
+
+        /**
+         * Puts the position on the board
+         *
+         * @return false if two pieces share a square or a pawn is on its first or last row
+         */
+        private boolean setUp(int index) {
+            long occupied = 0;
+            for (int i = pieceCount - 1; i >= 0; i--) {
+                squares[i] = (index >>> (6 * (pieceCount - 1 - i))) & 63;
+                occupied |= Bitboards.bit(squares[i]);
+                if (codes[i] % 6 == ChessPiece.PieceType.PAWN.ordinal()
+                        && (Bitboards.row(squares[i]) == 1 || Bitboards.row(squares[i]) == 8)) {
+                    return false;
+                }
+            }
+            if (Long.bitCount(occupied) != pieceCount) {
+                return false;
+            }
+            for (int i = 0; i < pieceCount; i++) {
+                if (placed[i] != ChessBoard.NO_SQUARE) {
+                    board.setSquare(placed[i], null);
+                }
+            }
+            for (int i = 0; i < pieceCount; i++) {
+                board.setSquare(squares[i], PIECES[codes[i]]);
+                placed[i] = squares[i];
+            }
+            return true;
+        }
+
+        private ChessGame.TeamColor sideToMove(int index) {
+            return ChessGame.TeamColor.values()[index >>> (6 * pieceCount)];
+        }
+    }
+
+    private static void sortTogether(int[] codes, int[] squares) {
+        for (int i = 1; i < codes.length; i++) {
+            for (int j = i; j > 0 && codes[j] < codes[j - 1]; j--) {
+                int code = codes[j];
+                codes[j] = codes[j - 1];
+                codes[j - 1] = code;
+                int square = squares[j];
+                squares[j] = squares[j - 1];
+                squares[j - 1] = square;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TablebaseGenerator <directory> <material>... [--threads n]");
+            return;
+        }
+        Path directory = Path.of(args[0]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> signatures = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                signatures.add(args[i]);
+            }
+        }
+
+        Files.createDirectories(directory);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            TablebaseGenerator generator = new TablebaseGenerator(directory, pool);
+            for (String signature : signatures) {
+                long start = System.currentTimeMillis();
+                Path file = generator.generate(signature);
+                String name = file.getFileName().toString().replace(Tablebase.FILE_EXTENSION, "");
+                System.out.printf("%s: %d positions, longest mate %d plies, %d ms%n", name,
+                        Files.size(file), generator.longestMate(name), System.currentTimeMillis() - start);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
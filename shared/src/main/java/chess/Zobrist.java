@@ -0,0 +1,77 @@
+package chess;
+
+/**
+ * Random 64-bit keys for Zobrist hashing. A position's key is the XOR of the key for
+ * every piece on its square, the castling rights, the file of a pawn which can be
+ * captured en passant and, when black is to move, the side to move key. Since XOR undoes
+ * itself, a move only has to flip the keys of what it changed.
+ * <p>
+ * The keys come from a fixed seed so a position hashes the same in every run, which
+ * lets keys be stored (e.g. alongside saved games) and compared later.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x1D872B41F3B2C4E5L;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long SIDE_TO_MOVE;
+
+    static {
+        long state = SEED;
+        for (long[] squareKeys : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                state += 0x9E3779B97F4A7C15L;
+                squareKeys[square] = mix(state);
+            }
+        }
+        // A single right gets its own key, and a set of rights is the XOR of its members
+        long[] singleRights = new long[4];
+        for (int right = 0; right < 4; right++) {
+            state += 0x9E3779B97F4A7C15L;
+            singleRights[right] = mix(state);
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            for (int right = 0; right < 4; right++) {
+                if ((rights & (1 << right)) != 0) {
+                    CASTLING[rights] ^= singleRights[right];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            state += 0x9E3779B97F4A7C15L;
+            EN_PASSANT_FILE[file] = mix(state);
+        }
+        state += 0x9E3779B97F4A7C15L;
+        SIDE_TO_MOVE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    // SplitMix64 finalizer, spreads each counter value over all 64 bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static long piece(ChessPiece piece, int square) {
+        return PIECE_SQUARE[piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal()][square];
+    }
+
+    /**
+     * @param castlingRights a mask of the ChessBoard castling right constants
+     */
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    public static long enPassantFile(int file) {
+        return EN_PASSANT_FILE[file];
+    }
+
+    public static long sideToMove(ChessGame.TeamColor teamTurn) {
+        return teamTurn == ChessGame.TeamColor.BLACK ? SIDE_TO_MOVE : 0L;
+    }
+}
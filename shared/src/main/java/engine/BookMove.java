@@ -0,0 +1,13 @@
+package engine;
+
+import chess.ChessMove;
+
+/**
+ * A move found in an {@link OpeningBook}
+ *
+ * @param move the move
+ * @param weight how often the book recommends it relative to the other moves of the
+ *               position, usually from how often and how well it was played
+ */
+public record BookMove(ChessMove move, int weight) {
+}
@@ -0,0 +1,238 @@
+package engine;
+
+import chess.ChessGame;
+import chess.Fen;
+import chess.BoardSnapshot;
+import chess.GameSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Finds good moves with an iterative deepening alpha-beta search (see {@link Search}).
+ * <p>
+ * The server can use one to play a side of a game, and tools can use one to analyse a
+ * position. An engine keeps its transposition table between searches, so searching the
+ * next position of the same game starts off with what it already learned. It runs one
+ * search at a time; {@link #stop()} may be called from any thread to end the current one.
+ * <p>
+ * With more than one thread the search runs lazy SMP: helper threads search the same
+ * position on their own boards, half of them a ply deeper, and share the transposition
+ * table with the main search. Only the main search decides the move and the limits,
+ * and the helpers stop when it does.
+ * <p>
+ * Run it as a main class to analyse a position, or with --scaling to compare the speed
+ * and time to depth from 1 thread up to --threads:
+ * <pre>
+ *     java engine.Engine --time 5000 --threads 4 r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1
+ *     java engine.Engine --scaling --depth 9 --threads 32
+ * </pre>
+ */
+public class Engine {
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    private static final SearchLimits HELPER_LIMITS = new SearchLimits(0, 0, 0); // until the main search stops
+
+    private final TranspositionTable table;
+    private final int threads;
+    private final ExecutorService helperPool; // null with a single thread
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicBoolean helpersStopRequested = new AtomicBoolean();
+
+    public Engine() {
+        this(DEFAULT_TABLE_MEGABYTES);
+    }
+
+    /**
+     * @param tableMegabytes how much memory the transposition table may use
+     */
+    public Engine(int tableMegabytes) {
+        this(tableMegabytes, 1);
+    }
+
+    /**
+     * @param tableMegabytes how much memory the shared transposition table may use
+     * @param threads how many threads each search uses, including the caller's
+     */
+    public Engine(int tableMegabytes, int threads) {
+        table = new TranspositionTable(tableMegabytes);
+        this.threads = Math.max(1, threads);
+        if (this.threads > 1) {
+            helperPool = Executors.newFixedThreadPool(this.threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "engine-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helperPool = null;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(game, limits, result -> { });
+    }
+
+    /**
+     * Searches the game's current position. The game itself is never changed, since the
+     * search plays its moves on a copy of the board. Positions from earlier in the game
+     * count towards repetitions
+     *
+     * @param game the game, which must not be changed by another thread during the call
+     * @param limits when to stop
+     * @param onIteration told the result of each completed iteration, e.g. to report progress
+     * @return the result of the deepest completed iteration
+     */
+    public synchronized SearchResult search(ChessGame game, SearchLimits limits, Consumer<SearchResult> onIteration) {
+        return runSearch(game.getBoard().snapshot(), game.getTeamTurn(), game.getGameState().getPositionHistory(),
+                limits, onIteration);
+    }
+
+    /**
+     * Searches a snapshot of a game, which is safe to do on any thread while the live game
+     * carries on. A snapshot has no move history, so earlier positions can't be repeated
+     */
+    public synchronized SearchResult search(GameSnapshot snapshot, SearchLimits limits,
+                                            Consumer<SearchResult> onIteration) {
+        return runSearch(snapshot.board(), snapshot.teamTurn(), new long[0], limits, onIteration);
+    }
+
+    private SearchResult runSearch(BoardSnapshot position, ChessGame.TeamColor teamTurn, long[] history,
+                                   SearchLimits limits, Consumer<SearchResult> onIteration) {
+        stopRequested.set(false);
+        helpersStopRequested.set(false);
+
+        List<Search> helpers = new ArrayList<>();
+        List<Future<?>> running = new ArrayList<>();
+        for (int id = 1; id < threads; id++) {
+            Search helper = new Search(position.toBoard(), table, helpersStopRequested);
+            int firstDepth = 1 + (id & 1);
+            helpers.add(helper);
+            running.add(helperPool.submit(() -> helper.run(teamTurn, history, HELPER_LIMITS, result -> { }, firstDepth)));
+        }
+
+        SearchResult result;
+        try {
+            result = new Search(position.toBoard(), table, stopRequested).run(teamTurn, history, limits, onIteration, 1);
+        } finally {
+            helpersStopRequested.set(true);
+            for (Future<?> helper : running) {
+                waitFor(helper);
+            }
+        }
+
+        // Report the work of every thread, not just the main search
+        long nodes = result.nodes();
+        for (Search helper : helpers) {
+            nodes += helper.getNodes();
+        }
+        return new SearchResult(result.bestMove(), result.score(), result.depth(), nodes, result.millis(), result.line());
+    }
+
+    private static void waitFor(Future<?> helper) {
+        try {
+            helper.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search helper failed", e.getCause());
+        }
+    }
+
+    /**
+     * Asks the current search to stop and return its best move so far. It still finishes
+     * its first iteration
+     */
+    public void stop() {
+        stopRequested.set(true);
+    }
+
+    /**
+     * Forgets everything learned from earlier searches, e.g. before starting a new game
+     */
+    public synchronized void clear() {
+        table.clear();
+    }
+
+    /**
+     * Stops the helper threads for good. The engine can still search on the caller's thread
+     */
+    public void shutdown() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        SearchLimits limits = new SearchLimits(0, 0, 0);
+        int threads = 1;
+        boolean scaling = false;
+        int next = 0;
+        while (next < args.length && args[next].startsWith("--")) {
+            if (args[next].equals("--scaling")) {
+                scaling = true;
+                next++;
+                continue;
+            }
+            long value = Long.parseLong(args[next + 1]);
+            switch (args[next]) {
+                case "--depth" -> limits = limits.withDepth((int) value);
+                case "--nodes" -> limits = limits.withNodes(value);
+                case "--time" -> limits = limits.withTime(value);
+                case "--threads" -> threads = (int) value;
+                default -> throw new IllegalArgumentException("Unknown option " + args[next]);
+            }
+            next += 2;
+        }
+        if (limits.depth() == 0 && limits.nodes() == 0 && limits.millis() == 0) {
+            limits = scaling ? SearchLimits.depth(8) : SearchLimits.time(5000);
+        }
+        String fen = next < args.length ? String.join(" ", List.of(args).subList(next, args.length)) : Fen.STARTING_POSITION;
+
+        if (scaling) {
+            printScaling(Fen.load(fen), limits, threads);
+            return;
+        }
+        Engine engine = new Engine(DEFAULT_TABLE_MEGABYTES, threads);
+        SearchResult result = engine.search(Fen.load(fen), limits, System.out::println);
+        System.out.println(result == null ? "no result" : "bestmove " + result.bestMove());
+        engine.shutdown();
+    }
+
+    /**
+     * Searches the same position with 1, 2, 4... threads, each with a fresh table, and
+     * prints the node rate and time to reach the depth limit for each
+     */
+    private static void printScaling(ChessGame game, SearchLimits limits, int maxThreads) {
+        System.out.printf("%7s %6s %14s %10s %14s %8s %10s%n", "threads", "depth", "nodes", "seconds",
+                "nodes/second", "speedup", "efficiency");
+        new Engine(DEFAULT_TABLE_MEGABYTES, 1).search(game, limits); // warm up the JIT so 1 thread isn't penalized
+        double baseSeconds = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            Engine engine = new Engine(DEFAULT_TABLE_MEGABYTES, threads);
+            long start = System.nanoTime();
+            SearchResult result = engine.search(game, limits);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            engine.shutdown();
+
+            if (threads == 1) {
+                baseSeconds = seconds;
+            }
+            double speedup = baseSeconds / seconds;
+            System.out.printf("%7d %6d %,14d %10.3f %,14.0f %8.2f %9.0f%%%n", threads, result.depth(),
+                    result.nodes(), seconds, result.nodes() / seconds, speedup, 100 * speedup / threads);
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PieceSquareTables;
+
+/**
+ * Scores a position for the search, in centipawns. The material and piece-square terms
+ * are kept by the board itself as moves are made and unmade, so a leaf costs a few
+ * arithmetic operations rather than a scan of the board.
+ */
+final class Evaluator {
+    // Indexed by PieceType ordinal, for ordering captures
+    static final int[] PIECE_VALUES = new int[6];
+
+    static {
+        for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+            PIECE_VALUES[type.ordinal()] = PieceSquareTables.pieceValue(type);
+        }
+    }
+
+    private Evaluator() {
+    }
+
+    /**
+     * @return the score for the team to move, positive when it is ahead
+     */
+    static int evaluate(ChessBoard board, ChessGame.TeamColor teamToMove) {
+        int score = board.getStaticScore();
+        return teamToMove == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,295 @@
+package engine;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.ChessRuleBook;
+import chess.GameSnapshot;
+import chess.InvalidMoveException;
+import chess.MoveBuffer;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only book of opening moves, looked up by position.
+ * <p>
+ * The file uses the Polyglot layout: 16 byte big-endian entries of a 64-bit position key,
+ * a 16-bit move, a 16-bit weight and 32 unused "learn" bits, sorted by key as an unsigned
+ * number. Moves are packed as to square in bits 0-5, from square in bits 6-11 and the
+ * promotion piece (1 knight to 4 queen) in bits 12-14, with castling written as the king
+ * taking its own rook. Keys are Polyglot's own ({@link PolyglotKey}), so existing .bin books
+ * can be read, and books written by a {@link Builder} can be read by other tools.
+ * <p>
+ * The file is memory-mapped rather than read, so opening even a large book is instant
+ * and its pages stay in the operating system's cache instead of on the heap. Lookups
+ * binary search the mapping with absolute reads, so one book can be {@link #open shared}
+ * by every game in the JVM without locking. Opening the same file again returns the same
+ * book, unless the file has been replaced since, e.g. by {@link Builder#write}.
+ */
+public final class OpeningBook {
+    static final int ENTRY_BYTES = 16;
+
+    private static final Map<Path, OpeningBook> OPEN_BOOKS = new ConcurrentHashMap<>();
+    private static final ChessPiece.PieceType[] PROMOTION_TYPES = {
+            null, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private final ByteBuffer entries;
+    private final long size;
+    private final BasicFileAttributes mappedFile; // to notice when the file is replaced
+    private final ChessRuleBook ruleBook = new ChessRuleBook();
+
+    private OpeningBook(ByteBuffer entries, BasicFileAttributes mappedFile) {
+        this.entries = entries;
+        this.size = entries.capacity() / ENTRY_BYTES;
+        this.mappedFile = mappedFile;
+    }
+
+    /**
+     * Maps a book file, or returns the book already mapped from the same file if it
+     * hasn't changed since
+     *
+     * @param path the book file
+     * @return the book
+     * @throws IOException if the file can't be read or isn't a whole number of entries
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        Path realPath = path.toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+        try {
+            // A replaced file is a new mapping; readers of the old book keep the old contents
+            return OPEN_BOOKS.compute(realPath, (key, book) ->
+                    book != null && book.isMappedFrom(attributes) ? book : map(key, attributes));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean isMappedFrom(BasicFileAttributes attributes) {
+        return Objects.equals(mappedFile.fileKey(), attributes.fileKey())
+                && mappedFile.lastModifiedTime().equals(attributes.lastModifiedTime())
+                && mappedFile.size() == attributes.size();
+    }
+
+    private static OpeningBook map(Path path, BasicFileAttributes attributes) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes % ENTRY_BYTES != 0 || bytes > Integer.MAX_VALUE) {
+                throw new IOException("Error: " + path + " is not an opening book");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            return new OpeningBook(buffer, attributes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return how many entries the book has
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the book's legal moves for the position, most recommended first, or an empty
+     * list if the position isn't in the book
+     */
+    public List<BookMove> lookup(ChessGame game) {
+        return lookup(PolyglotKey.of(game), game.getBoard(), game.getTeamTurn());
+    }
+
+    public List<BookMove> lookup(GameSnapshot snapshot) {
+        ChessBoard board = snapshot.board().toBoard();
+        return lookup(PolyglotKey.of(board, snapshot.teamTurn()), board, snapshot.teamTurn());
+    }
+
+    /**
+     * Chooses one of the book's moves at random, in proportion to their weights
+     *
+     * @return the move, or null if the position isn't in the book
+     */
+    public ChessMove pick(ChessGame game, Random random) {
+        return pick(lookup(game), random);
+    }
+
+    public ChessMove pick(GameSnapshot snapshot, Random random) {
+        return pick(lookup(snapshot), random);
+    }
+
+    private static ChessMove pick(List<BookMove> moves, Random random) {
+        long total = 0;
+        for (BookMove move : moves) {
+            total += move.weight();
+        }
+        if (total == 0) {
+            return moves.isEmpty() ? null : moves.getFirst().move();
+        }
+        long choice = (long) (random.nextDouble() * total);
+        for (BookMove move : moves) {
+            choice -= move.weight();
+            if (choice < 0) {
+                return move.move();
+            }
+        }
+        return moves.getLast().move();
+    }
+
+    private List<BookMove> lookup(long key, ChessBoard board, ChessGame.TeamColor teamTurn) {
+        List<BookMove> moves = new ArrayList<>();
+        long index = firstEntry(key);
+        if (index == size) {
+            return moves;
+        }
+
+        // Keys are only 64 bits, so check the moves really are legal here
+        MoveBuffer legalMoves = new MoveBuffer();
+        ruleBook.generateAllLegalMoves(board, teamTurn, legalMoves);
+        for (; index < size && keyAt(index) == key; index++) {
+            int offset = (int) (index * ENTRY_BYTES);
+            ChessMove move = decodeMove(entries.getShort(offset + 8) & 0xFFFF, board);
+            if (legalMoves.contains(PackedMove.fromChessMove(move))) {
+                moves.add(new BookMove(move, entries.getShort(offset + 10) & 0xFFFF));
+            }
+        }
+        moves.sort(Comparator.comparingInt(BookMove::weight).reversed());
+        return moves;
+    }
+
+    /**
+     * @return the index of the first entry for the key, or size if there is none
+     */
+    private long firstEntry(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < size && keyAt(low) == key ? low : size;
+    }
+
+    private long keyAt(long index) {
+        return entries.getLong((int) (index * ENTRY_BYTES));
+    }
+
+    static ChessMove decodeMove(int bookMove, ChessBoard board) {
+        int to = bookMove & 0x3F;
+        int from = (bookMove >>> 6) & 0x3F;
+        int promotionCode = (bookMove >>> 12) & 7;
+        ChessPiece.PieceType promotion = promotionCode < PROMOTION_TYPES.length ? PROMOTION_TYPES[promotionCode] : null;
+
+        // Castling is written as the king taking its own rook
+        ChessPiece king = board.getPiece(from);
+        ChessPiece rook = board.getPiece(to);
+        if (king != null && king.getPieceType() == ChessPiece.PieceType.KING && rook != null
+                && rook.getPieceType() == ChessPiece.PieceType.ROOK && rook.getTeamColor() == king.getTeamColor()) {
+            to = to > from ? from + 2 : from - 2;
+        }
+        return new ChessMove(position(from), position(to), promotion);
+    }
+
+    static int encodeMove(ChessMove move, ChessBoard board) {
+        int from = Bitboards.square(move.getStartPosition());
+        int to = Bitboards.square(move.getEndPosition());
+        ChessPiece piece = board.getPiece(from);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            to = to > from ? from + 3 : from - 4;
+        }
+        int promotion = 0;
+        if (move.getPromotionPiece() != null) {
+            for (int i = 1; i < PROMOTION_TYPES.length; i++) {
+                if (PROMOTION_TYPES[i] == move.getPromotionPiece()) {
+                    promotion = i;
+                }
+            }
+        }
+        return to | from << 6 | promotion << 12;
+    }
+
+    private static ChessPosition position(int square) {
+        return new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+    }
+
+    /**
+     * Collects moves by position and writes them out as a book file
+     */
+    public static final class Builder {
+        private record Key(long positionKey, int move) { }
+
+        private final Map<Key, Integer> weights = new HashMap<>();
+
+        /**
+         * Adds weight to a move of a position, keeping the total within the 16 bits a
+         * book entry has room for
+         */
+        public Builder add(ChessGame game, ChessMove move, int weight) {
+            Key key = new Key(PolyglotKey.of(game), encodeMove(move, game.getBoard()));
+            weights.merge(key, weight, (a, b) -> Math.min(0xFFFF, a + b));
+            return this;
+        }
+
+        /**
+         * Adds every move of a game played from the starting position, each with weight 1
+         *
+         * @throws InvalidMoveException if one of the moves is illegal
+         */
+        public Builder addGame(List<ChessMove> moves) throws InvalidMoveException {
+            ChessGame game = new ChessGame();
+            for (ChessMove move : moves) {
+                add(game, move, 1);
+                game.makeMove(move);
+            }
+            return this;
+        }
+
+        /**
+         * Writes the book to a temporary file and then moves it over the path, so a book
+         * which is already mapped keeps its old contents rather than being cut short
+         * underneath its readers
+         */
+        public void write(Path path) throws IOException {
+            List<Map.Entry<Key, Integer>> sorted = new ArrayList<>(weights.entrySet());
+            sorted.sort(Comparator.<Map.Entry<Key, Integer>, Long>comparing(
+                            entry -> entry.getKey().positionKey(), Long::compareUnsigned)
+                    .thenComparing(Map.Entry::getValue, Comparator.reverseOrder()));
+
+            ByteBuffer buffer = ByteBuffer.allocate(sorted.size() * ENTRY_BYTES);
+            for (Map.Entry<Key, Integer> entry : sorted) {
+                buffer.putLong(entry.getKey().positionKey());
+                buffer.putShort((short) entry.getKey().move());
+                buffer.putShort((short) entry.getValue().intValue());
+                buffer.putInt(0);
+            }
+            Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "book", ".tmp");
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
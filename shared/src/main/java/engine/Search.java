@@ -0,0 +1,432 @@
+package engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessRuleBook;
+import chess.MoveBuffer;
+import chess.PackedMove;
+import chess.Zobrist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * One search of one position: iterative deepening over a negamax alpha-beta search, with
+ * a quiescence search of captures at the leaves so a position is never scored in the
+ * middle of an exchange.
+ * <p>
+ * Moves are tried best first, which is what makes alpha-beta fast: the move the
+ * transposition table remembers, then captures by most valuable victim and least
+ * valuable attacker (MVV-LVA), then promotions, then quiet moves which caused a cutoff
+ * at the same ply (killers) or anywhere in the tree (history).
+ * <p>
+ * A Search works on its own board and is used by one thread at a time. Several can run
+ * at once on copies of the same position, sharing one transposition table (lazy SMP):
+ * the helpers fill the table with results the main search then finds for free.
+ */
+final class Search {
+    static final int INFINITY = 32000;
+    static final int MATE = 31000;
+    static final int MAX_PLY = 100;
+    private static final int CHECK_INTERVAL = 1023; // nodes between looking at the clock, minus one
+
+    private static final int TABLE_MOVE_SCORE = 1_000_000;
+    private static final int CAPTURE_SCORE = 100_000;
+    private static final int PROMOTION_SCORE = 90_000;
+    private static final int KILLER_SCORE = 80_000;
+    private static final int LOSING_CAPTURE_SCORE = -100_000;
+    private static final int HISTORY_LIMIT = 70_000;
+
+    private final ChessBoard board;
+    private final ChessRuleBook ruleBook = new ChessRuleBook();
+    private final TranspositionTable table;
+    private final AtomicBoolean stopRequested;
+
+    private final MoveBuffer[] moveBuffers = new MoveBuffer[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[64][64];
+
+    // Keys of the game so far and of every position on the current search path, for repetitions
+    private long[] keyStack;
+    private int keyCount;
+
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+    private int currentDepth;
+    private boolean stopped;
+    private int rootBestMove;
+
+    Search(ChessBoard board, TranspositionTable table, AtomicBoolean stopRequested) {
+        this.board = board;
+        this.table = table;
+        this.stopRequested = stopRequested;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moveBuffers[ply] = new MoveBuffer();
+            moveScores[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Searches one iteration deeper at a time until a limit is reached
+     *
+     * @param teamTurn the team to move on the board
+     * @param gameHistory position keys earlier in the game, so the search sees repetitions
+     * @param limits when to stop
+     * @param onIteration told the result of each completed iteration
+     * @param firstDepth the depth of the first iteration. Helper threads start some a ply
+     *                   deeper, so threads aren't all searching the same depth at once
+     * @return the result of the deepest completed iteration
+     */
+    SearchResult run(ChessGame.TeamColor teamTurn, long[] gameHistory, SearchLimits limits,
+                     Consumer<SearchResult> onIteration, int firstDepth) {
+        long start = System.nanoTime();
+        deadline = limits.millis() > 0 ? start + limits.millis() * 1_000_000 : Long.MAX_VALUE;
+        maxNodes = limits.nodes() > 0 ? limits.nodes() : Long.MAX_VALUE;
+        int maxDepth = limits.depth() > 0 ? Math.min(limits.depth(), MAX_PLY - 1) : MAX_PLY - 1;
+
+        long rootKey = board.getZobristKey() ^ Zobrist.sideToMove(teamTurn);
+        int historyLength = gameHistory.length;
+        if (historyLength > 0 && gameHistory[historyLength - 1] == rootKey) {
+            historyLength--; // the root is pushed by the search itself
+        }
+        keyStack = new long[historyLength + MAX_PLY + 1];
+        System.arraycopy(gameHistory, 0, keyStack, 0, historyLength);
+        keyCount = historyLength;
+
+        SearchResult result = null;
+        for (currentDepth = firstDepth; currentDepth <= maxDepth; currentDepth++) {
+            rootBestMove = 0;
+            int score = negamax(currentDepth, -INFINITY, INFINITY, 0, teamTurn);
+            if (stopped) {
+                break; // an unfinished iteration can't be trusted, keep the last one
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            result = new SearchResult(rootBestMove == 0 ? null : PackedMove.toChessMove(rootBestMove),
+                    score, currentDepth, nodes, millis, principalVariation(teamTurn));
+            onIteration.accept(result);
+            if (rootBestMove == 0 || Math.abs(score) >= MATE - currentDepth) {
+                break; // no moves, or a mate was found which deeper searches can't improve on
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Follows the transposition table's best moves from the root to recover the line the
+     * search expects. Entries can have been replaced, so the line stops at the first
+     * missing or illegal move, or at a repetition
+     */
+    private List<ChessMove> principalVariation(ChessGame.TeamColor teamTurn) {
+        List<ChessMove> line = new ArrayList<>();
+        if (rootBestMove == 0) {
+            return line;
+        }
+        MoveBuffer moves = moveBuffers[0];
+        ChessGame.TeamColor color = teamTurn;
+        int move = rootBestMove;
+        int played = 0;
+        while (played < currentDepth) {
+            move = findLegal(moves, color, move);
+            if (move == 0) {
+                break;
+            }
+            keyStack[keyCount++] = board.getZobristKey() ^ Zobrist.sideToMove(color);
+            board.makeMove(move);
+            played++;
+            line.add(PackedMove.toChessMove(move));
+            color = ChessGame.getOtherColor(color);
+
+            long key = board.getZobristKey() ^ Zobrist.sideToMove(color);
+            long entry = table.probe(key);
+            if (entry == 0 || isRepetition(key)) {
+                break;
+            }
+            move = TranspositionTable.move(entry);
+        }
+        for (int i = 0; i < played; i++) {
+            board.unmakeMove();
+        }
+        keyCount -= played;
+        return line;
+    }
+
+    /**
+     * @return the generated move matching a table move, with its flags, or 0 if it isn't legal
+     */
+    private int findLegal(MoveBuffer moves, ChessGame.TeamColor color, int move) {
+        int moveCount = ruleBook.generateAllLegalMoves(board, color, moves);
+        for (int i = 0; i < moveCount; i++) {
+            if (PackedMove.sameMove(moves.get(i), move)) {
+                return moves.get(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return positions visited so far. Only read this from another thread once the search has finished
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    private void checkLimits() {
+        // The first iteration always finishes, so there is always a move to play
+        if (currentDepth > 1 && (nodes >= maxNodes || System.nanoTime() >= deadline || stopRequested.get())) {
+            stopped = true;
+        }
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply, ChessGame.TeamColor color) {
+        if ((++nodes & CHECK_INTERVAL) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long key = board.getZobristKey() ^ Zobrist.sideToMove(color);
+        if (ply > 0) {
+            if (isRepetition(key)) {
+                return 0;
+            }
+            if (ply >= MAX_PLY) {
+                return Evaluator.evaluate(board, color);
+            }
+        }
+
+        boolean inCheck = ruleBook.isInCheck(board, color);
+        if (inCheck) {
+            depth++; // don't let a check push a threat past the horizon
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply, color, inCheck);
+        }
+
+        int tableMove = 0;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int tableScore = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && tableScore >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && tableScore <= alpha)) {
+                    return tableScore;
+                }
+            }
+        }
+
+        MoveBuffer moves = moveBuffers[ply];
+        int moveCount = ruleBook.generateAllLegalMoves(board, color, moves);
+        if (moveCount == 0) {
+            return inCheck ? -MATE + ply : 0; // checkmate or stalemate
+        }
+        int[] scores = scoreMoves(moves, ply, tableMove);
+
+        ChessGame.TeamColor otherColor = ChessGame.getOtherColor(color);
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        keyStack[keyCount++] = key;
+        for (int i = 0; i < moveCount; i++) {
+            int move = pickNext(moves, scores, i, moveCount);
+            board.makeMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1, otherColor);
+            board.unmakeMove();
+            if (stopped) {
+                keyCount--;
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (ply == 0) {
+                        rootBestMove = move;
+                    }
+                    if (score >= beta) {
+                        if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                            rememberQuietCutoff(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        keyCount--;
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches captures and promotions until the position is quiet, letting the side to
+     * move "stand pat" on the static score instead of making a bad capture. In check
+     * every evasion is searched, since standing pat isn't an option
+     */
+    private int quiescence(int alpha, int beta, int ply, ChessGame.TeamColor color, boolean inCheck) {
+        if (ply >= MAX_PLY) {
+            return Evaluator.evaluate(board, color);
+        }
+
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluator.evaluate(board, color);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+        }
+
+        MoveBuffer moves = moveBuffers[ply];
+        int moveCount = ruleBook.generateAllLegalMoves(board, color, moves);
+        if (moveCount == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int[] scores = scoreMoves(moves, ply, 0);
+
+        ChessGame.TeamColor otherColor = ChessGame.getOtherColor(color);
+        for (int i = 0; i < moveCount; i++) {
+            int move = pickNext(moves, scores, i, moveCount);
+            if (!inCheck && scores[i] < PROMOTION_SCORE) {
+                break; // moves come sorted, so only quiet moves and losing captures are left
+            }
+            if ((++nodes & CHECK_INTERVAL) == 0) {
+                checkLimits();
+            }
+            board.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1, otherColor, ruleBook.isInCheck(board, otherColor));
+            board.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private boolean isRepetition(long key) {
+        // Only every other position has the same side to move
+        for (int i = keyCount - 2; i >= 0; i -= 2) {
+            if (keyStack[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] scoreMoves(MoveBuffer moves, int ply, int tableMove) {
+        int moveCount = moves.size();
+        if (moveScores[ply].length < moveCount) {
+            moveScores[ply] = new int[moveCount];
+        }
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves.get(i);
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            if (tableMove != 0 && PackedMove.sameMove(move, tableMove)) {
+                scores[i] = TABLE_MOVE_SCORE;
+            } else if (PackedMove.isCapture(move)) {
+                int victim = (move & PackedMove.EN_PASSANT) != 0
+                        ? Evaluator.PIECE_VALUES[ChessPiece.PieceType.PAWN.ordinal()]
+                        : Evaluator.PIECE_VALUES[board.getPiece(to).getPieceType().ordinal()];
+                int attacker = Evaluator.PIECE_VALUES[board.getPiece(from).getPieceType().ordinal()];
+                // Captures which lose material go after the quiet moves
+                int base = attacker > victim && ruleBook.staticExchange(board, move) < 0
+                        ? LOSING_CAPTURE_SCORE : CAPTURE_SCORE;
+                scores[i] = base + victim * 10 - attacker / 10;
+            } else if (PackedMove.isPromotion(move)) {
+                scores[i] = PROMOTION_SCORE + Evaluator.PIECE_VALUES[PackedMove.promotionPiece(move).ordinal()];
+            } else if (PackedMove.sameMove(move, killers[ply][0])) {
+                scores[i] = KILLER_SCORE;
+            } else if (PackedMove.sameMove(move, killers[ply][1])) {
+                scores[i] = KILLER_SCORE - 1;
+            } else {
+                scores[i] = history[from][to];
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Moves the best scoring of the remaining moves to index, and returns it
+     */
+    private static int pickNext(MoveBuffer moves, int[] scores, int index, int moveCount) {
+        int best = index;
+        for (int i = index + 1; i < moveCount; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        if (best != index) {
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private void rememberQuietCutoff(int move, int depth, int ply) {
+        if (!PackedMove.sameMove(move, killers[ply][0])) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] fromHistory = history[PackedMove.from(move)];
+        int to = PackedMove.to(move);
+        fromHistory[to] += depth * depth;
+        if (fromHistory[to] > HISTORY_LIMIT) { // keep history below the killer scores
+            for (int[] row : history) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] /= 2;
+                }
+            }
+        }
+    }
+
+    // Mate scores count plies from the root, but the table is shared between plies, so
+    // store them as plies from this node instead
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,36 @@
+package engine;
+
+/**
+ * When a search should stop. A search ends as soon as any limit is reached; 0 means no
+ * limit of that kind. It always finishes depth 1, so there is a move to play.
+ *
+ * @param depth the deepest iteration to search, in plies
+ * @param nodes the most positions to visit
+ * @param millis the most time to spend, in milliseconds
+ */
+public record SearchLimits(int depth, long nodes, long millis) {
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, nodes, 0);
+    }
+
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(0, 0, millis);
+    }
+
+    public SearchLimits withDepth(int depth) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withNodes(long nodes) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withTime(long millis) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+}
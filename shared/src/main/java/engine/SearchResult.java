@@ -0,0 +1,45 @@
+package engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * What a search found: the move to play and how good the position is for the side to move.
+ *
+ * @param bestMove the best move found, or null if the side to move has no legal moves
+ * @param score the score in centipawns for the side to move, or a mate score (see {@link #isMate()})
+ * @param depth the deepest iteration completed
+ * @param nodes positions visited, including quiescence
+ * @param millis time spent
+ * @param line the moves the search expects both sides to play, starting with bestMove
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes, long millis, List<ChessMove> line) {
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return moves until mate, positive if the side to move is mating and negative if
+     * it is being mated, or 0 if the score is not a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+
+    public long nodesPerSecond() {
+        return millis == 0 ? nodes * 1000 : nodes * 1000 / millis;
+    }
+
+    @Override
+    public String toString() {
+        String scoreText = isMate() ? "mate " + mateIn() : "cp " + score;
+        return String.format("depth %d score %s nodes %d nps %d time %d bestmove %s pv %s",
+                depth, scoreText, nodes, nodesPerSecond(), millis, bestMove, line);
+    }
+}
@@ -0,0 +1,80 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what earlier searches found about a position, keyed by its Zobrist key: the
+ * best move, the score and whether that score is exact or only a bound.
+ * <p>
+ * Every search thread shares one table without locking. Entries live in a flat long[]
+ * as pairs of (key ^ data, data). Two threads writing the same slot at once can leave
+ * the halves from different writes, but then the XOR no longer gives back the key, so
+ * the torn entry just reads as a miss. A new entry replaces an old one unless the old
+ * one describes the same position searched deeper.
+ */
+final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1; // the search failed high, the real score is at least this
+    static final int UPPER_BOUND = 2; // the search failed low, the real score is at most this
+
+    private final long[] slots; // 16 bytes per entry
+    private final int mask;
+
+    TranspositionTable(int megabytes) {
+        int entries = Integer.highestOneBit(Math.max(1, (int) Math.min(1L << 30, megabytes * (1L << 20) / 16)));
+        slots = new long[entries * 2];
+        mask = entries - 1;
+    }
+
+    /**
+     * @return the packed entry for the position, or 0 if there is none
+     */
+    long probe(long key) {
+        int index = ((int) key & mask) * 2;
+        long data = slots[index + 1];
+        return (slots[index] ^ data) == key ? data : 0L;
+    }
+
+    void store(long key, int move, int score, int depth, int bound) {
+        int index = ((int) key & mask) * 2;
+        long oldData = slots[index + 1];
+        if ((slots[index] ^ oldData) == key && depth < depth(oldData) && bound != EXACT) {
+            return; // keep the deeper result
+        }
+        long data = pack(move, score, depth, bound);
+        slots[index] = key ^ data;
+        slots[index + 1] = data;
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0L);
+    }
+
+    /*
+        Entry layout: bits 0-14 the move without flags, 16-31 the score, 32-39 the depth
+        and 40-41 the bound. Bit 42 marks the entry as used, so 0 can mean empty.
+     */
+    private static long pack(int move, int score, int depth, int bound) {
+        return (move & 0x7FFFL)
+                | ((score & 0xFFFFL) << 16)
+                | ((long) (depth & 0xFF) << 32)
+                | ((long) bound << 40)
+                | (1L << 42);
+    }
+
+    static int move(long entry) {
+        return (int) (entry & 0x7FFF);
+    }
+
+    static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    static int depth(long entry) {
+        return (int) ((entry >>> 32) & 0xFF);
+    }
+
+    static int bound(long entry) {
+        return (int) ((entry >>> 40) & 0x3);
+    }
+}
@@ -2,5 +2,26 @@ package model;
 
 import chess.ChessGame;
 
+/**
+ * @param botColor the seat the server's engine plays, or null when two people play. Games
+ *                 stored before bot games existed read back as null
+ */
 public record GameData(int gameID, String whiteUsername, String blackUsername, String gameName,
-                       ChessGame game) { }
+                       ChessGame game, ChessGame.TeamColor botColor) {
+    /**
+     * Shown in the seat the engine plays. The seat is known by botColor, so an account with
+     * this name is never taken for the engine
+     */
+    public static final String BOT_USERNAME = "computer";
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, null);
+    }
+
+    /**
+     * @return whether the engine plays the given color in this game
+     */
+    public boolean isBotSeat(ChessGame.TeamColor color) {
+        return botColor != null && botColor == color;
+    }
+}
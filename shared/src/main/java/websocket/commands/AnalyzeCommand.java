@@ -0,0 +1,47 @@
+package websocket.commands;
+
+import java.util.Objects;
+
+/**
+ * Asks the server to analyse the current position of a game. Results stream back to
+ * the sender as ANALYSIS messages until the time runs out or a CANCEL_ANALYSIS arrives
+ */
+public class AnalyzeCommand extends UserGameCommand {
+
+    private final Integer millis;
+
+    /**
+     * @param millis how long to analyse for, or null for the server's default. The server
+     *               may shorten it
+     */
+    public AnalyzeCommand(CommandType commandType, String authToken,
+                          Integer gameID, Integer millis) {
+        super(commandType, authToken, gameID);
+
+        this.millis = millis;
+    }
+
+    public Integer getMillis() {
+        return this.millis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+        AnalyzeCommand that = (AnalyzeCommand) o;
+        return Objects.equals(millis, that.millis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), millis);
+    }
+}
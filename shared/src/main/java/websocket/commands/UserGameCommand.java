@@ -26,7 +26,9 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        ANALYZE,
+        CANCEL_ANALYSIS
     }
 
     public CommandType getCommandType() {
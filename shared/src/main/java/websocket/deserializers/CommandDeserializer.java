@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.TypeAdapter;
+import websocket.commands.AnalyzeCommand;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 
@@ -23,8 +24,9 @@ public class CommandDeserializer {
                         UserGameCommand.CommandType commandType =
                                 UserGameCommand.CommandType.valueOf(commandString);
                         return switch (commandType) {
-                            case CONNECT, LEAVE, RESIGN -> defaultAdapter.fromJsonTree(el);
+                            case CONNECT, LEAVE, RESIGN, CANCEL_ANALYSIS -> defaultAdapter.fromJsonTree(el);
                             case MAKE_MOVE -> ctx.deserialize(el, MakeMoveCommand.class);
+                            case ANALYZE -> ctx.deserialize(el, AnalyzeCommand.class);
                             default -> null;
                         };
                     } else {
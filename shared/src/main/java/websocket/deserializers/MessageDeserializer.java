@@ -5,6 +5,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonParseException;
 import websocket.commands.UserGameCommand;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
 import websocket.messages.NotificationMessage;
@@ -26,6 +27,7 @@ public class MessageDeserializer {
                             case LOAD_GAME -> ctx.deserialize(el, LoadGameMessage.class);
                             case NOTIFICATION -> ctx.deserialize(el, NotificationMessage.class);
                             case ERROR -> ctx.deserialize(el, ErrorMessage.class);
+                            case ANALYSIS, ANALYSIS_COMPLETE -> ctx.deserialize(el, AnalysisMessage.class);
                             default -> throw new JsonParseException("Error parsing ServerMessage");
                         };
                     } else {
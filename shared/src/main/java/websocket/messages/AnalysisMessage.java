@@ -0,0 +1,91 @@
+package websocket.messages;
+
+import chess.ChessMove;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The server's analysis of a position so far. ANALYSIS messages arrive as the search
+ * goes deeper, and one ANALYSIS_COMPLETE ends it, with a status saying how it ended.
+ * Scores are from white's point of view
+ */
+public class AnalysisMessage extends ServerMessage {
+    public enum Status {
+        SEARCHING,
+        FINISHED, // ran for its time, or until the result was certain
+        CANCELLED, // stopped early, with the best result found so far
+        NOT_STARTED // cancelled before the search began, so there is no result
+    }
+
+    private final Status status;
+    private final int depth;
+    private final int score;
+    private final int mateIn;
+    private final long nodes;
+    private final List<ChessMove> bestLine;
+
+    /**
+     * @param status SEARCHING until the final result, then how the analysis ended
+     * @param depth how many plies deep the search has looked, or 0 if it never started
+     * @param score centipawns, positive when white is better
+     * @param mateIn moves until mate, positive if white mates, or 0 if no mate was found
+     * @param nodes positions searched
+     * @param bestLine the moves the search expects, starting with the best move, or empty
+     *                 if the game is already over or the search never started
+     */
+    public AnalysisMessage(Status status, int depth, int score, int mateIn, long nodes, List<ChessMove> bestLine) {
+        super(status == Status.SEARCHING ? ServerMessageType.ANALYSIS : ServerMessageType.ANALYSIS_COMPLETE);
+        this.status = status;
+        this.depth = depth;
+        this.score = score;
+        this.mateIn = mateIn;
+        this.nodes = nodes;
+        this.bestLine = bestLine;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMateIn() {
+        return mateIn;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public List<ChessMove> getBestLine() {
+        return bestLine;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        if (!super.equals(o)) {
+            return false;
+        }
+        AnalysisMessage that = (AnalysisMessage) o;
+        return status == that.status && depth == that.depth && score == that.score && mateIn == that.mateIn && nodes == that.nodes
+                && Objects.equals(bestLine, that.bestLine);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), status, depth, score, mateIn, nodes, bestLine);
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import calculators.*;
+import chess.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Asks for every piece's moves in every position of a batch of random games, and reports
+ * how many bytes that allocates when a calculator is created per call versus when the
+ * shared {@link MoveCalculators} instances are used. The positions are set up beforehand,
+ * so only pieceMoves is measured.
+ * <p>
+ * Not a JUnit test; run it with
+ * {@code java -cp shared/target/classes:shared/target/test-classes benchmark.CalculatorAllocationBenchmark}
+ */
+public class CalculatorAllocationBenchmark {
+    private static final int GAMES = 200;
+    private static final int MAX_PLIES = 200;
+    private static final int ROUNDS = 5;
+
+    /**
+     * One piece to ask for moves, on a board of its own which nothing changes
+     */
+    private record PieceOnBoard(ChessBoard board, ChessPosition position, ChessPiece.PieceType type) { }
+
+    public static void main(String[] args) throws InvalidMoveException {
+        List<PieceOnBoard> pieces = randomPositions(new Random(240));
+
+        Function<ChessPiece.PieceType, PieceMovesCalculator> perCall = type -> switch (type) {
+            case KING -> new KingMovesCalculator();
+            case QUEEN -> new QueenMovesCalculator();
+            case BISHOP -> new BishopMovesCalculator();
+            case KNIGHT -> new KnightMovesCalculator();
+            case ROOK -> new RookMovesCalculator();
+            case PAWN -> new PawnMovesCalculator();
+        };
+        Function<ChessPiece.PieceType, PieceMovesCalculator> shared = MoveCalculators::forType;
+
+        // Warm up both paths so the JIT has settled before measuring
+        for (int i = 0; i < ROUNDS; i++) {
+            replay(pieces, perCall);
+            replay(pieces, shared);
+        }
+
+        for (int i = 0; i < ROUNDS; i++) {
+            report("new calculator per call", pieces, perCall);
+            report("shared calculators     ", pieces, shared);
+        }
+    }
+
+    private static void report(String label, List<PieceOnBoard> pieces,
+                               Function<ChessPiece.PieceType, PieceMovesCalculator> calculators) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long calls = replay(pieces, calculators);
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.printf("%s: %,d pieceMoves calls, %,d bytes (%.1f bytes/call), %.1f MB/s%n",
+                label, calls, bytes, (double) bytes / calls, bytes / 1e6 / (elapsed / 1e9));
+    }
+
+    private static long replay(List<PieceOnBoard> pieces,
+                               Function<ChessPiece.PieceType, PieceMovesCalculator> calculators) {
+        for (PieceOnBoard piece : pieces) {
+            calculators.apply(piece.type()).pieceMoves(piece.board(), piece.position());
+        }
+        return pieces.size();
+    }
+
+    /**
+     * Plays random games, keeping a copy of the board and the side to move's pieces at every ply
+     */
+    private static List<PieceOnBoard> randomPositions(Random random) throws InvalidMoveException {
+        List<PieceOnBoard> pieces = new ArrayList<>();
+        for (int i = 0; i < GAMES; i++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < MAX_PLIES && !game.gameIsOver(); ply++) {
+                ChessBoard board = game.getBoard().snapshot().toBoard();
+                List<ChessMove> legalMoves = new ArrayList<>();
+                for (var iterator = board.iterator(game.getTeamTurn()); iterator.hasNext();) {
+                    ChessPosition position = iterator.next();
+                    pieces.add(new PieceOnBoard(board, position, board.getPiece(position).getPieceType()));
+                    legalMoves.addAll(game.validMoves(position));
+                }
+                game.makeMove(legalMoves.get(random.nextInt(legalMoves.size())));
+            }
+        }
+        return pieces;
+    }
+}
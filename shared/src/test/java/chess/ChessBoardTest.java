@@ -0,0 +1,189 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+class ChessBoardTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol,
+                                  ChessPiece.PieceType promotion) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), promotion);
+    }
+
+    @Test
+    void unmakeRestoresCapture() {
+        ChessBoard board = TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | |Q|K| | |R|
+                """);
+        ChessBoard original = TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | |Q|K| | |R|
+                """);
+
+        board.makeMove(move(1, 4, 5, 4, null));
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN),
+                board.getPiece(new ChessPosition(5, 4)));
+        board.unmakeMove();
+
+        Assertions.assertEquals(original, board);
+        Assertions.assertEquals(original.getOccupied(), board.getOccupied());
+    }
+
+    @Test
+    void unmakeRestoresEnPassantAndPromotion() {
+        ChessBoard board = TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | |P| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | |P| | | |
+                | | | | |K| | | |
+                """);
+        ChessBoard original = TestUtilities.loadBoard("""
+                | | | | |k| | | |
+                | |P| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | |P| | | |
+                | | | | |K| | | |
+                """);
+
+        // double pawn push, en passant capture, then promotion
+        board.makeMove(move(2, 5, 4, 5, null));
+        Assertions.assertEquals(Bitboards.square(3, 5), board.getEnPassantSquare());
+        board.makeMove(move(4, 4, 3, 5, null));
+        Assertions.assertNull(board.getPiece(new ChessPosition(4, 5)), "En passant did not remove the pawn");
+        board.makeMove(move(7, 2, 8, 2, ChessPiece.PieceType.KNIGHT));
+
+        board.unmakeMove();
+        board.unmakeMove();
+        Assertions.assertEquals(Bitboards.square(3, 5), board.getEnPassantSquare());
+        board.unmakeMove();
+
+        Assertions.assertEquals(original, board);
+        Assertions.assertEquals(ChessBoard.NO_SQUARE, board.getEnPassantSquare());
+    }
+
+    @Test
+    void unmakeRestoresCastlingRights() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+
+        board.makeMove(move(2, 8, 4, 8, null));
+        board.makeMove(move(1, 8, 3, 8, null));
+        Assertions.assertEquals(ChessBoard.ALL_CASTLING_RIGHTS & ~ChessBoard.WHITE_KINGSIDE,
+                board.getCastlingRights());
+        board.unmakeMove();
+        board.unmakeMove();
+
+        Assertions.assertEquals(ChessBoard.ALL_CASTLING_RIGHTS, board.getCastlingRights());
+        Assertions.assertEquals(TestUtilities.defaultBoard(), board);
+    }
+
+    @Test
+    void failUnmakeWithoutMove() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+
+        Assertions.assertThrows(IllegalStateException.class, board::unmakeMove);
+    }
+
+    @Test
+    void packedMovesMatchValidMoves() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessBoard original = new ChessBoard();
+        original.resetBoard();
+        ChessRuleBook ruleBook = new ChessRuleBook();
+        MoveBuffer buffer = new MoveBuffer();
+
+        Assertions.assertEquals(20, ruleBook.generateAllLegalMoves(board, ChessGame.TeamColor.WHITE, buffer));
+        for (int i = 0; i < buffer.size(); i++) {
+            int move = buffer.get(i);
+            ChessPosition start = ChessPosition.of(PackedMove.from(move));
+            Assertions.assertTrue(ruleBook.validMoves(board, start).contains(PackedMove.toChessMove(move)));
+
+            board.makeMove(move);
+            board.unmakeMove();
+            Assertions.assertEquals(original, board);
+        }
+    }
+
+    @Test
+    void castleMovesRookAndUnmakes() {
+        ChessBoard board = TestUtilities.loadBoard("""
+                |r| | | |k| | |r|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | |K| | |R|
+                """);
+        ChessBoard original = TestUtilities.loadBoard("""
+                |r| | | |k| | |r|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | |K| | |R|
+                """);
+
+        board.makeMove(move(1, 5, 1, 7, null));
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                board.getPiece(new ChessPosition(1, 6)));
+        Assertions.assertNull(board.getPiece(new ChessPosition(1, 8)));
+        Assertions.assertEquals(ChessBoard.BLACK_KINGSIDE | ChessBoard.BLACK_QUEENSIDE, board.getCastlingRights());
+
+        board.unmakeMove();
+        Assertions.assertEquals(original, board);
+        Assertions.assertEquals(ChessBoard.ALL_CASTLING_RIGHTS, board.getCastlingRights());
+        Assertions.assertEquals(original.getZobristKey(), board.getZobristKey());
+    }
+
+    @Test
+    void staticScoreFollowsMakeAndUnmake() {
+        ChessBoard start = new ChessBoard();
+        start.resetBoard();
+        Assertions.assertEquals(0, start.getStaticScore());
+        Assertions.assertEquals(PieceSquareTables.MAX_PHASE, start.getGamePhase());
+
+        ChessBoard board = Fen.load("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1").getBoard();
+        int score = board.getStaticScore();
+        int phase = board.getGamePhase();
+        ChessRuleBook ruleBook = new ChessRuleBook();
+        MoveBuffer moves = new MoveBuffer();
+        int count = ruleBook.generateAllLegalMoves(board, ChessGame.TeamColor.WHITE, moves);
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves.get(i));
+            // A board indexed from scratch must agree with the running totals
+            ChessBoard rebuilt = board.snapshot().toBoard();
+            Assertions.assertEquals(rebuilt.getStaticScore(), board.getStaticScore(), PackedMove.toString(moves.get(i)));
+            Assertions.assertEquals(rebuilt.getGamePhase(), board.getGamePhase());
+            board.unmakeMove();
+        }
+        Assertions.assertEquals(score, board.getStaticScore());
+        Assertions.assertEquals(phase, board.getGamePhase());
+    }
+}
@@ -0,0 +1,170 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+
+class ChessGameTest {
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    void statusCachedAfterEachMove() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 6, 3, 6));
+        Assertions.assertEquals(20, game.getGameState().getLegalMoveCount());
+        Assertions.assertFalse(game.getGameState().isTeamInCheck());
+
+        game.makeMove(move(7, 5, 5, 5));
+        game.makeMove(move(2, 7, 4, 7));
+        game.makeMove(move(8, 4, 4, 8)); // fool's mate
+
+        GameState gameState = game.getGameState();
+        Assertions.assertTrue(gameState.isTeamInCheck());
+        Assertions.assertEquals(0, gameState.getLegalMoveCount());
+        Assertions.assertTrue(game.gameIsOver());
+        Assertions.assertEquals(GameState.Winner.BLACK, game.getWinner());
+        Assertions.assertEquals(GameState.EndReason.CHECKMATE, gameState.getEndReason());
+    }
+
+    @Test
+    void statusWorkedOutForLoadedPositions() {
+        // Fool's mate, loaded rather than played
+        ChessGame mated = Fen.load("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        Assertions.assertTrue(mated.gameIsOver());
+        Assertions.assertEquals(GameState.EndReason.CHECKMATE, mated.getGameState().getEndReason());
+        Assertions.assertEquals(GameState.Winner.BLACK, mated.snapshot().winner());
+        Assertions.assertTrue(mated.snapshot().toGame().gameIsOver());
+
+        ChessGame stalemate = Fen.load("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        Assertions.assertTrue(stalemate.gameIsOver());
+        Assertions.assertEquals(GameState.EndReason.STALEMATE, stalemate.getGameState().getEndReason());
+
+        // Giving the move back to the other side starts the game up again
+        stalemate.setTeamTurn(ChessGame.TeamColor.WHITE);
+        Assertions.assertFalse(stalemate.gameIsOver());
+        Assertions.assertTrue(stalemate.getGameState().getLegalMoveCount() > 0);
+    }
+
+    @Test
+    void resignationSurvivesSettingUpPosition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.resign(ChessGame.TeamColor.WHITE);
+
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        game.setBoard(Fen.load("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1").getBoard()); // stalemate
+        Assertions.assertTrue(game.gameIsOver());
+        Assertions.assertEquals(GameState.EndReason.RESIGNATION, game.getGameState().getEndReason());
+        Assertions.assertEquals(GameState.Winner.BLACK, game.getWinner());
+        Assertions.assertEquals(0, game.getGameState().getLegalMoveCount());
+        Assertions.assertEquals(GameState.EndReason.RESIGNATION, game.snapshot().toGame().getGameState().getEndReason());
+    }
+
+    @Test
+    void positionKeyFollowsPositionNotMoveOrder() throws InvalidMoveException {
+        ChessGame knightsFirst = new ChessGame();
+        knightsFirst.makeMove(move(1, 7, 3, 6));
+        knightsFirst.makeMove(move(8, 7, 6, 6));
+        knightsFirst.makeMove(move(1, 2, 3, 3));
+        ChessGame otherOrder = new ChessGame();
+        otherOrder.makeMove(move(1, 2, 3, 3));
+        otherOrder.makeMove(move(8, 7, 6, 6));
+        otherOrder.makeMove(move(1, 7, 3, 6));
+        Assertions.assertEquals(knightsFirst.positionKey(), otherOrder.positionKey());
+
+        // The same pieces with the other side to move is a different position
+        ChessGame whiteToMove = new ChessGame();
+        ChessGame blackToMove = new ChessGame();
+        blackToMove.setTeamTurn(ChessGame.TeamColor.BLACK);
+        Assertions.assertNotEquals(whiteToMove.positionKey(), blackToMove.positionKey());
+
+        // Building the board from scratch gives the key that was kept up to date move by move
+        ChessBoard rebuilt = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = knightsFirst.getBoard().getPiece(square);
+            if (piece != null) {
+                rebuilt.addPiece(ChessPosition.of(square), piece);
+            }
+        }
+        Assertions.assertEquals(knightsFirst.getBoard().getZobristKey(), rebuilt.getZobristKey());
+    }
+
+    @Test
+    void moveCacheSharedByPositionNotGame() throws InvalidMoveException {
+        MoveCache cache = new MoveCache(64);
+        ChessRuleBook ruleBook = new ChessRuleBook();
+        ChessGame first = new ChessGame();
+        ChessGame second = new ChessGame();
+        ChessPosition knight = new ChessPosition(1, 2);
+
+        Collection<ChessMove> moves = cache.validMoves(first.getBoard(), knight, ruleBook);
+        moves.clear(); // callers get their own copy
+        Assertions.assertEquals(2, cache.validMoves(second.getBoard(), knight, ruleBook).size());
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+
+        // After a move the key changes, so the old entry is never used for the new position
+        first.makeMove(move(2, 4, 3, 4));
+        Assertions.assertEquals(3, cache.validMoves(first.getBoard(), knight, ruleBook).size());
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertNull(cache.validMoves(first.getBoard(), new ChessPosition(4, 4), ruleBook));
+    }
+
+    @Test
+    void drawByThreefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 2; i++) {
+            game.makeMove(move(1, 7, 3, 6));
+            game.makeMove(move(8, 7, 6, 6));
+            game.makeMove(move(3, 6, 1, 7));
+            Assertions.assertFalse(game.gameIsOver());
+            game.makeMove(move(6, 6, 8, 7));
+        }
+
+        // The starting position has now been seen three times
+        Assertions.assertTrue(game.gameIsOver());
+        Assertions.assertEquals(GameState.Winner.DRAW, game.getWinner());
+        Assertions.assertEquals(GameState.EndReason.THREEFOLD_REPETITION, game.getGameState().getEndReason());
+    }
+
+    @Test
+    void drawByFiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = Fen.load("4k3/8/8/8/8/8/8/R3K3 w - - 98 1");
+        game.makeMove(move(1, 1, 2, 1));
+        Assertions.assertFalse(game.gameIsOver());
+        game.makeMove(move(8, 5, 8, 4));
+
+        Assertions.assertEquals(GameState.FIFTY_MOVE_HALFMOVES, game.getGameState().getHalfmoveClock());
+        Assertions.assertEquals(GameState.EndReason.FIFTY_MOVE_RULE, game.getGameState().getEndReason());
+
+        // A pawn move or capture starts the count again
+        ChessGame reset = Fen.load("4k3/8/8/8/8/8/P7/4K3 w - - 99 1");
+        reset.makeMove(move(2, 1, 3, 1));
+        Assertions.assertEquals(0, reset.getGameState().getHalfmoveClock());
+        Assertions.assertFalse(reset.gameIsOver());
+    }
+
+    @Test
+    void snapshotUnchangedByLaterMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        GameSnapshot snapshot = game.latestSnapshot();
+        Assertions.assertSame(snapshot, game.snapshot()); // nothing changed since the move
+
+        ChessBoard boardAfterFirstMove = snapshot.board().toBoard();
+        game.makeMove(move(7, 5, 5, 5));
+
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, snapshot.teamTurn());
+        Assertions.assertEquals(1, snapshot.plyCount());
+        Assertions.assertNull(snapshot.board().getPiece(new ChessPosition(5, 5)));
+        Assertions.assertEquals(boardAfterFirstMove, snapshot.board().toBoard());
+        Assertions.assertNotEquals(boardAfterFirstMove, game.getBoard());
+
+        ChessGame copy = snapshot.toGame();
+        Assertions.assertEquals(snapshot.positionKey(), copy.positionKey());
+        Assertions.assertEquals(2, game.snapshot().plyCount());
+    }
+}
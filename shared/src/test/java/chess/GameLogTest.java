@@ -0,0 +1,68 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class GameLogTest {
+
+    @Test
+    void entriesRoundTrip() {
+        GameLog log = new GameLog();
+        ChessMove push = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 2),
+                ChessPiece.PieceType.KNIGHT);
+        ChessPiece whitePawn = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+        ChessPiece blackRook = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK);
+        for (int i = 0; i < 20; i++) { // enough to grow the array
+            log.addMove(push, whitePawn);
+        }
+        log.addMove(promotion, whitePawn, blackRook);
+
+        Assertions.assertEquals(21, log.size());
+        Assertions.assertEquals(new GameLog.LogEntry(push, whitePawn, null), log.getMove(0));
+        Assertions.assertEquals(new GameLog.LogEntry(promotion, whitePawn, blackRook), log.getLastMove());
+        Assertions.assertEquals(21, log.getAllMoves().size());
+        Assertions.assertNull(new GameLog().getLastMove());
+    }
+
+    @Test
+    void serializesCompactly() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+
+        Gson gson = new Gson();
+        GameLog log = game.getBoard().getGameLog();
+        GameLog copy = gson.fromJson(gson.toJson(log), GameLog.class);
+        Assertions.assertEquals(log, copy);
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN),
+                copy.getLastMove().capturedPiece());
+    }
+
+    @Test
+    void readsEarlierFormats() {
+        Gson gson = new Gson();
+        ChessMove push = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        ChessPiece whitePawn = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+
+        // Games stored before the log was packed hold a list of entries
+        GameLog old = gson.fromJson("{\"moves\":[{\"move\":{\"startPosition\":{\"row\":2,\"col\":5},"
+                + "\"endPosition\":{\"row\":4,\"col\":5}},"
+                + "\"piece\":{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"}}]}", GameLog.class);
+        Assertions.assertEquals(new GameLog.LogEntry(push, whitePawn, null), old.getLastMove());
+
+        // A padded array is cut down to its size, and an empty one can still grow
+        GameLog padded = gson.fromJson("{\"moves\":[0,0,0],\"size\":0}", GameLog.class);
+        Assertions.assertEquals(0, padded.size());
+        padded.addMove(push, whitePawn);
+        Assertions.assertEquals(1, padded.size());
+
+        // Only played entries are written
+        JsonObject json = gson.toJsonTree(padded).getAsJsonObject();
+        Assertions.assertEquals(1, json.getAsJsonArray("moves").size());
+        Assertions.assertFalse(json.has("size"));
+    }
+}
@@ -0,0 +1,37 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelPerftTest {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    void matchesSequentialCount() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ChessGame game = Fen.load(KIWIPETE);
+            Assertions.assertEquals(97_862L, new ParallelPerft(game, pool, 1, null).count(3));
+            Assertions.assertEquals(4_085_603L, new ParallelPerft(game, pool, 2, null).count(4));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sharedTableSkipsTranspositions() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ChessGame game = Fen.load(Fen.STARTING_POSITION);
+            ParallelPerft.Table table = new ParallelPerft.Table(8);
+            Assertions.assertEquals(4_865_609L, new ParallelPerft(game, pool, 1, table).count(5));
+            // The second count reads everything back from the table
+            Assertions.assertEquals(4_865_609L, new ParallelPerft(game, pool, 1, table).count(5));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
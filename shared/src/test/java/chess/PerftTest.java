@@ -0,0 +1,45 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.Map;
+
+class PerftTest {
+
+    static List<Perft.ReferencePosition> referencePositions() {
+        return Perft.REFERENCE_POSITIONS;
+    }
+
+    @ParameterizedTest
+    @MethodSource("referencePositions")
+    void matchesReferenceCount(Perft.ReferencePosition position) {
+        ChessGame game = Fen.load(position.fen());
+        String fenBefore = Fen.toFen(game);
+
+        Assertions.assertEquals(position.nodes(), new Perft(game).count(position.depth()), position.name());
+        Assertions.assertEquals(fenBefore, Fen.toFen(game), "board should be restored after counting");
+    }
+
+    @Test
+    void divideSumsToCount() {
+        Perft perft = new Perft(Fen.load(Fen.STARTING_POSITION));
+        Map<ChessMove, Long> divide = perft.divide(3);
+
+        Assertions.assertEquals(20, divide.size());
+        Assertions.assertEquals(perft.count(3), divide.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void fenRoundTrip() {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b Kq e3 0 1";
+        Assertions.assertEquals(fen, Fen.toFen(Fen.load(fen)));
+
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(game.getBoard(), Fen.load(Fen.STARTING_POSITION).getBoard());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Fen.load("8/8/8 w - -"));
+    }
+}
@@ -0,0 +1,53 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StaticExchangeTest {
+
+    private final ChessRuleBook ruleBook = new ChessRuleBook();
+
+    private int exchange(String fen, int startRow, int startCol, int endRow, int endCol) {
+        ChessBoard board = Fen.load(fen).getBoard();
+        ChessMove move = new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+        return ruleBook.staticExchange(board, move);
+    }
+
+    @Test
+    void undefendedCaptureWinsThePiece() {
+        Assertions.assertEquals(320, exchange("4k3/8/8/4n3/3P4/8/8/4K3 w - - 0 1", 4, 4, 5, 5));
+    }
+
+    @Test
+    void pawnTakesDefendedKnight() {
+        Assertions.assertEquals(220, exchange("4k3/8/3p4/4n3/3P4/8/8/4K3 w - - 0 1", 4, 4, 5, 5));
+    }
+
+    @Test
+    void queenTakesDefendedPawn() {
+        Assertions.assertEquals(-800, exchange("4k3/8/3p4/4p3/8/8/7Q/4K3 w - - 0 1", 2, 8, 5, 5));
+    }
+
+    @Test
+    void rookBehindRookJoinsIn() {
+        Assertions.assertEquals(100, exchange("k7/4r3/8/4p3/8/8/4R3/4R1K1 w - - 0 1", 2, 5, 5, 5));
+        // Without the second white rook, the first is lost for a pawn
+        Assertions.assertEquals(-400, exchange("k7/4r3/8/4p3/8/8/4R3/6K1 w - - 0 1", 2, 5, 5, 5));
+    }
+
+    @Test
+    void kingCannotRecaptureDefendedPiece() {
+        Assertions.assertEquals(-400, exchange("8/8/8/3k4/4p3/8/8/4R1K1 w - - 0 1", 1, 5, 4, 5));
+        Assertions.assertEquals(100, exchange("8/8/8/3k4/4p3/5P2/8/4R1K1 w - - 0 1", 1, 5, 4, 5));
+    }
+
+    @Test
+    void enPassantWinsAPawn() {
+        Assertions.assertEquals(100, exchange("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", 5, 5, 6, 4));
+    }
+
+    @Test
+    void quietMoveToAttackedSquareLosesThePiece() {
+        Assertions.assertEquals(-320, exchange("4k3/8/3p4/8/8/5N2/8/4K3 w - - 0 1", 3, 6, 5, 5));
+    }
+}
@@ -0,0 +1,64 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+class TablebaseTest {
+
+    @TempDir
+    static Path directory;
+
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    static void generate() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            TablebaseGenerator generator = new TablebaseGenerator(directory, pool);
+            Path file = generator.generate("KQK");
+            Assertions.assertEquals(2 * 64 * 64 * 64, Files.size(file));
+            // Mate takes at most 10 moves, so black to move can last 20 plies
+            Assertions.assertEquals(20, generator.longestMate("KQK"));
+        } finally {
+            pool.shutdown();
+        }
+        tablebase = Tablebase.open(directory);
+    }
+
+    private static Tablebase.Result probe(String fen) {
+        return tablebase.probe(Fen.load(fen));
+    }
+
+    @Test
+    void findsMates() {
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.WIN, 1), probe("k7/8/1K6/8/8/8/8/2Q5 w - - 0 1"));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.LOSS, 0), probe("k1Q5/8/1K6/8/8/8/8/8 b - - 0 1"));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.DRAW, 0), probe("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"));
+    }
+
+    @Test
+    void mirrorsReversedColors() {
+        Assertions.assertTrue(tablebase.covers("KKQ"));
+        Assertions.assertEquals(new Tablebase.Result(Tablebase.Outcome.WIN, 1), probe("2q5/8/8/8/8/8/8/K1k5 b - - 0 1"));
+    }
+
+    @Test
+    void bestMoveMates() {
+        ChessGame game = Fen.load("k7/8/1K6/8/8/8/8/2Q5 w - - 0 1");
+        ChessMove move = tablebase.bestMove(game.getBoard(), game.getTeamTurn());
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 3), new ChessPosition(8, 3), null), move);
+    }
+
+    @Test
+    void skipsUncoveredPositions() {
+        Assertions.assertEquals(Tablebase.Outcome.DRAW, probe("k7/8/8/8/8/8/8/K7 w - - 0 1").outcome());
+        Assertions.assertNull(probe("k7/8/8/8/8/8/8/KR6 w - - 0 1"));
+        Assertions.assertNull(probe(Fen.STARTING_POSITION));
+    }
+}
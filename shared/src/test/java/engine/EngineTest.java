@@ -0,0 +1,72 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class EngineTest {
+
+    @Test
+    void findsMateInOne() {
+        ChessGame game = Fen.load("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = new Engine(1).search(game, SearchLimits.depth(4));
+
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null),
+                result.bestMove());
+        Assertions.assertEquals(1, result.mateIn());
+        Assertions.assertEquals(List.of(result.bestMove()), result.line());
+    }
+
+    @Test
+    void takesHangingQueen() {
+        ChessGame game = Fen.load("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        SearchResult result = new Engine(1).search(game, SearchLimits.depth(3));
+
+        Assertions.assertEquals(new ChessMove(new ChessPosition(2, 4), new ChessPosition(5, 4), null),
+                result.bestMove());
+        Assertions.assertTrue(result.score() > 300);
+        Assertions.assertEquals(result.bestMove(), result.line().getFirst());
+        Assertions.assertTrue(result.line().size() <= result.depth());
+    }
+
+    @Test
+    void stopsAtNodeLimit() {
+        ChessGame game = Fen.load(Fen.STARTING_POSITION);
+        SearchResult result = new Engine(1).search(game, SearchLimits.nodes(20_000));
+
+        Assertions.assertNotNull(result.bestMove());
+        // Limits are checked every 1024 nodes, and the iteration that hit it is thrown away
+        Assertions.assertTrue(result.nodes() <= 20_000 + 1024, "searched " + result.nodes());
+        Assertions.assertEquals(Fen.STARTING_POSITION, Fen.toFen(game), "the game itself is not changed");
+    }
+
+    @Test
+    void noMoveWhenMated() {
+        ChessGame game = Fen.load("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1");
+        SearchResult result = new Engine(1).search(game, SearchLimits.depth(3));
+
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(-Search.MATE, result.score());
+    }
+
+    @Test
+    void helperThreadsShareTheTable() {
+        Engine engine = new Engine(4, 3);
+        try {
+            ChessGame game = Fen.load("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+            SearchResult result = engine.search(game, SearchLimits.depth(4));
+            Assertions.assertEquals(4, result.depth());
+            Assertions.assertNotNull(result.bestMove());
+
+            ChessGame mate = Fen.load("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+            Assertions.assertEquals(1, engine.search(mate, SearchLimits.depth(4)).mateIn());
+        } finally {
+            engine.shutdown();
+        }
+    }
+}
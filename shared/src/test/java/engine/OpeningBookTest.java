@@ -0,0 +1,82 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Fen;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+class OpeningBookTest {
+
+    @TempDir
+    Path directory;
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return new ChessMove(new ChessPosition(startRow, startCol), new ChessPosition(endRow, endCol), null);
+    }
+
+    @Test
+    void looksUpWeightedMoves() throws Exception {
+        ChessMove e4 = move(2, 5, 4, 5);
+        ChessMove d4 = move(2, 4, 4, 4);
+        ChessMove e5 = move(7, 5, 5, 5);
+        Path path = directory.resolve("openings.bin");
+        new OpeningBook.Builder()
+                .addGame(List.of(e4, e5))
+                .addGame(List.of(e4, move(7, 3, 5, 3)))
+                .addGame(List.of(d4))
+                .write(path);
+
+        OpeningBook book = OpeningBook.open(path);
+        Assertions.assertEquals(4, book.size());
+        Assertions.assertEquals(4 * OpeningBook.ENTRY_BYTES, Files.size(path));
+        Assertions.assertSame(book, OpeningBook.open(path));
+
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(List.of(new BookMove(e4, 2), new BookMove(d4, 1)), book.lookup(game));
+        Assertions.assertEquals(book.lookup(game), book.lookup(game.snapshot()));
+
+        game.makeMove(e4);
+        Assertions.assertEquals(2, book.lookup(game).size());
+        Assertions.assertTrue(book.lookup(game).contains(new BookMove(e5, 1)));
+
+        game.makeMove(e5);
+        Assertions.assertTrue(book.lookup(game).isEmpty());
+        Assertions.assertNull(book.pick(game, new Random(1)));
+    }
+
+    @Test
+    void castlingRoundTrips() throws Exception {
+        ChessGame game = Fen.load("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        ChessMove castle = move(1, 5, 1, 7);
+        Assertions.assertEquals(0x0107, OpeningBook.encodeMove(castle, game.getBoard()));
+
+        Path path = directory.resolve("castle.bin");
+        new OpeningBook.Builder().add(game, castle, 3).add(game, move(1, 5, 1, 3), 1).write(path);
+        OpeningBook book = OpeningBook.open(path);
+        Assertions.assertEquals(castle, book.lookup(game).getFirst().move());
+        Assertions.assertEquals(move(1, 5, 1, 3), book.lookup(game).get(1).move());
+    }
+
+    @Test
+    void reopeningSeesRewrittenBook() throws Exception {
+        Path path = directory.resolve("rewritten.bin");
+        new OpeningBook.Builder().addGame(List.of(move(2, 5, 4, 5))).write(path);
+        OpeningBook first = OpeningBook.open(path);
+
+        new OpeningBook.Builder().addGame(List.of(move(2, 4, 4, 4), move(7, 4, 5, 4))).write(path);
+        OpeningBook second = OpeningBook.open(path);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals(2, second.size());
+        Assertions.assertEquals(move(2, 4, 4, 4), second.lookup(new ChessGame()).getFirst().move());
+        // readers of the old book keep its contents
+        Assertions.assertEquals(move(2, 5, 4, 5), first.lookup(new ChessGame()).getFirst().move());
+    }
+}
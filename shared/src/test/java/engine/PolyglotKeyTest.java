@@ -0,0 +1,37 @@
+package engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PolyglotKeyTest {
+
+    private static ChessGame play(String... moves) throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (String move : moves) {
+            game.makeMove(new ChessMove(
+                    new ChessPosition(move.charAt(1) - '0', move.charAt(0) - 'a' + 1),
+                    new ChessPosition(move.charAt(3) - '0', move.charAt(2) - 'a' + 1), null));
+        }
+        return game;
+    }
+
+    @Test
+    void matchesPublishedKeys() throws InvalidMoveException {
+        // The test positions from the Polyglot book format description
+        Assertions.assertEquals(0x463b96181691fc9cL, PolyglotKey.of(play()));
+        Assertions.assertEquals(0x823c9b50fd114196L, PolyglotKey.of(play("e2e4")));
+        Assertions.assertEquals(0x0756b94461c50fb0L, PolyglotKey.of(play("e2e4", "d7d5")));
+        Assertions.assertEquals(0x662fafb965db29d4L, PolyglotKey.of(play("e2e4", "d7d5", "e4e5")));
+        Assertions.assertEquals(0x22a48b5a8e47ff78L, PolyglotKey.of(play("e2e4", "d7d5", "e4e5", "f7f5")));
+        Assertions.assertEquals(0x652a607ca3f242c1L, PolyglotKey.of(play("e2e4", "d7d5", "e4e5", "f7f5", "e1e2")));
+        Assertions.assertEquals(0x00fdd303c946bdd9L,
+                PolyglotKey.of(play("e2e4", "d7d5", "e4e5", "f7f5", "e1e2", "e8f7")));
+        Assertions.assertEquals(0x3c8123ea7b067637L, PolyglotKey.of(play("a2a4", "b7b5", "h2h4", "b5b4", "c2c4")));
+        Assertions.assertEquals(0x5c3f9b829b279560L,
+                PolyglotKey.of(play("a2a4", "b7b5", "h2h4", "b5b4", "c2c4", "b4c3", "a1a3")));
+    }
+}